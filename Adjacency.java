@@ -0,0 +1,175 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Precomputed neighbourhoods for a rectangular grid whose cells are
+ * numbered in row-major order. Each cell belongs to one of sixteen
+ * neighbourhood classes, depending on which sides it has neighbours on,
+ * and each class has a table of the index offsets of the adjacent cells.
+ * Neighbourhood queries therefore need no bounds checks or allocation.
+ *
+ * The neighbours can also be described by a 3x3 window of bits, such
+ * as one read from an occupancy bitset, which is translated into a bit
+ * per neighbour in the order of its offsets.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class Adjacency
+{
+    // The most cells that can be adjacent to any one cell.
+    public static final int MAX_ADJACENT = 8;
+    // Bits making up a cell's neighbourhood class, saying which sides it has neighbours on.
+    private static final int HAS_UP = 1, HAS_DOWN = 2, HAS_LEFT = 4, HAS_RIGHT = 8;
+
+    // The neighbourhood class of each cell, an index into neighbourOffsets.
+    private byte[] cellClass;
+    // For each neighbourhood class, the index offsets of the adjacent cells.
+    private int[][] neighbourOffsets;
+    // For each neighbourhood class and 3x3 window of bits, a bit for each
+    // adjacent cell that is set in the window, in the order of the offsets.
+    private byte[][] windowToNeighbours;
+
+    /**
+     * Work out the neighbourhoods of a grid of the given dimensions.
+     * @param depth The depth of the grid.
+     * @param width The width of the grid.
+     */
+    public Adjacency(int depth, int width)
+    {
+        cellClass = new byte[depth * width];
+        for(int row = 0; row < depth; row++) {
+            int rowClass = (row > 0 ? HAS_UP : 0) | (row < depth - 1 ? HAS_DOWN : 0);
+            for(int col = 0; col < width; col++) {
+                int colClass = (col > 0 ? HAS_LEFT : 0) | (col < width - 1 ? HAS_RIGHT : 0);
+                cellClass[row * width + col] = (byte) (rowClass | colClass);
+            }
+        }
+
+        neighbourOffsets = new int[16][];
+        windowToNeighbours = new byte[16][1 << 9];
+        for(int type = 0; type < 16; type++) {
+            int[] offsets = new int[MAX_ADJACENT];
+            // The position of each adjacent cell in a 3x3 window, row by row.
+            int[] windowPositions = new int[MAX_ADJACENT];
+            int count = 0;
+            for(int roffset = -1; roffset <= 1; roffset++) {
+                if((roffset < 0 && (type & HAS_UP) == 0) || (roffset > 0 && (type & HAS_DOWN) == 0)) {
+                    continue;
+                }
+                for(int coffset = -1; coffset <= 1; coffset++) {
+                    if((coffset < 0 && (type & HAS_LEFT) == 0) || (coffset > 0 && (type & HAS_RIGHT) == 0)) {
+                        continue;
+                    }
+                    // Exclude the original location.
+                    if(roffset != 0 || coffset != 0) {
+                        windowPositions[count] = (roffset + 1) * 3 + coffset + 1;
+                        offsets[count++] = roffset * width + coffset;
+                    }
+                }
+            }
+            neighbourOffsets[type] = Arrays.copyOf(offsets, count);
+            for(int window = 0; window < 1 << 9; window++) {
+                int neighbours = 0;
+                for(int i = 0; i < count; i++) {
+                    neighbours |= ((window >>> windowPositions[i]) & 1) << i;
+                }
+                windowToNeighbours[type][window] = (byte) neighbours;
+            }
+        }
+    }
+
+    /**
+     * Return the index offsets of the cells adjacent to a cell.
+     * Adding each offset to the cell gives an adjacent cell.
+     * The returned array is shared and must not be modified.
+     * @param cell The index of the cell.
+     * @return The offsets of its neighbours, in a fixed order.
+     */
+    public int[] getOffsets(int cell)
+    {
+        return neighbourOffsets[cellClass[cell]];
+    }
+
+    /**
+     * Translate a 3x3 window of bits centred on a cell into a bit for
+     * each of its adjacent cells. Bits for positions outside the grid,
+     * and for the cell itself, are dropped.
+     * @param cell The index of the cell.
+     * @param window Nine bits, row by row from the top left, the lowest first.
+     * @return A bit for each adjacent cell, in the order of getOffsets.
+     */
+    public int getNeighbourBits(int cell, int window)
+    {
+        return windowToNeighbours[cellClass[cell]][window] & 0xFF;
+    }
+
+    /**
+     * Fill the given array with the cells adjacent to a cell, in a
+     * random order.
+     * @param cell The cell from which to generate adjacencies.
+     * @param buffer Receives the adjacent cells. It must have room
+     *               for at least MAX_ADJACENT entries.
+     * @param rand The random number generator to shuffle with.
+     * @return The number of adjacent cells written to the buffer.
+     */
+    public int adjacentCells(int cell, int[] buffer, Random rand)
+    {
+        int[] offsets = neighbourOffsets[cellClass[cell]];
+        int count = offsets.length;
+        for(int i = 0; i < count; i++) {
+            buffer[i] = cell + offsets[i];
+        }
+        shuffle(buffer, count, rand);
+        return count;
+    }
+
+    /**
+     * Shuffle the neighbours of a cell as adjacentCells would, drawing
+     * the same random numbers, and return the first of them that is
+     * marked, without building the shuffled list.
+     * @param count The number of neighbours.
+     * @param marked A bit for each neighbour, in the order of getOffsets.
+     * @param rand The random number generator to shuffle with.
+     * @return The position in getOffsets of the first marked neighbour
+     *         in the shuffled order, or -1 if none is marked.
+     */
+    public static int firstInShuffle(int count, int marked, Random rand)
+    {
+        // The shuffle applied to the positions, four bits to each. The
+        // draws are made whatever is marked, as the shuffle would make them.
+        long order = 0x76543210L;
+        for(int i = count - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            long swap = ((order >>> (4 * i)) ^ (order >>> (4 * j))) & 0xF;
+            order ^= (swap << (4 * i)) | (swap << (4 * j));
+        }
+        if(marked == 0) {
+            return -1;
+        }
+        for(int i = 0; ; i++) {
+            int position = (int) (order >>> (4 * i)) & 0xF;
+            if((marked & (1 << position)) != 0) {
+                return position;
+            }
+        }
+    }
+
+    /**
+     * Put the first count entries of an array into a random order with
+     * a Fisher-Yates shuffle from the top, drawing the same random
+     * numbers as Collections.shuffle, so runs from before the
+     * neighbourhoods were precomputed are repeated exactly.
+     * @param buffer The array to shuffle.
+     * @param count How many entries to shuffle.
+     * @param rand The random number generator to use.
+     */
+    public static void shuffle(int[] buffer, int count, Random rand)
+    {
+        for(int i = count - 1; i > 0; i--) {
+            int j = rand.nextInt(i + 1);
+            int swap = buffer[i];
+            buffer[i] = buffer[j];
+            buffer[j] = swap;
+        }
+    }
+}
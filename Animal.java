@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -11,49 +10,139 @@ import java.util.Random;
 public abstract class Animal
 {
     // The probability an animal becomes infected without contact
-    private static final double INFECTED_PROBABILITY = 0.001;
+    static final double INFECTED_PROBABILITY = 0.001;
     // Probability an animal will die if dieseased
-    private static final double DISEASE_DEATH_PROBABILITY = 0.01;
+    static final double DISEASE_DEATH_PROBABILITY = 0.01;
     // Probability disease will spread when mating
-    private static final double MATING_DISEASE_SPREAD = 0.15;
-    // Probability that disease spreads between animals
-    private static double diseaseSpreadProbability;
+    static final double MATING_DISEASE_SPREAD = 0.15;
+    // Probability that disease spreads between animals in normal weather
+    static final double DISEASE_SPREAD_PROBABILITY = 0.01;
+    // Probability that disease spreads between animals when it is raining
+    static final double RAIN_DISEASE_SPREAD_PROBABILITY = 0.025;
     
     private static final Random rand = Randomizer.getRandom();
+    // The parameters of the simulation the animal is in.
+    private final SimulationParameters parameters;
+    // The parameters of the animal's species.
+    private final SpeciesParameters traits;
     // Whether the animal is alive or not.
     private boolean alive;
     // The animal's field.
     private Field field;
-    // The animal's position in the field.        
-    private Location location;
+    // The clock the animal's age and food level are measured by.
+    private final LifecycleScheduler lifecycle;
+    // The index of the animal's cell in the field, or -1 once it has died.
+    private int cell;
     // The animal's sex
     private boolean isMale;
     // Whether the animal is infected or not
     private boolean isInfected;
+    // The cells around the animal, refilled by each neighbourhood query.
+    private final int[] adjacentCells;
     
     
     
     /**
-     * Create a new animal at location in field.
+     * Create a new animal in a cell of the field.
      * 
      * @param field The field currently occupied.
-     * @param location The location within the field.
+     * @param cell The index of the cell within the field.
      */
-    public Animal(Field field, Location location)
+    public Animal(Field field, int cell)
     {
         alive = true;
+        adjacentCells = new int[Field.MAX_ADJACENT];
+        parameters = field.getParameters();
+        traits = parameters.getSpecies(getSpecies());
+        lifecycle = field.getLifecycle();
         setSex();
         this.field = field;
-        setLocation(location);
-        diseaseSpreadProb();
+        this.cell = -1;
+        setCell(cell);
+        field.getStats().incrementCount(getSpecies());
     }
     
     /**
      * Make this animal act - that is: make it do
      * whatever it wants/needs to do.
+     * @param environment The conditions of the current step.
      * @param newAnimals A list to receive newly born animals.
      */
-    abstract public void act(List<Animal> newAnimals);
+    abstract public void act(Environment environment, List<Animal> newAnimals);
+    
+    /**
+     * Return the number identifying the animal's species.
+     * @return One of the species numbers in Species.
+     */
+    abstract protected int getSpecies();
+    
+    /**
+     * Return the animal's age.
+     * @return The animal's age.
+     */
+    abstract protected int getAge();
+    
+    /**
+     * Return the animal's food level.
+     * @return The animal's food level, or 0 if it does not eat.
+     */
+    abstract protected int getFoodLevel();
+    
+    /**
+     * Return the step on which the animal will die of old age or hunger
+     * if it does not eat before then. Eating can only put it off.
+     * @return The step, which is no later than the current step if the
+     *         animal is already due to die.
+     */
+    abstract protected int getDeathStep();
+    
+    /**
+     * Set the animal's age and food level, when it is restored from
+     * a saved simulation.
+     * @param age The animal's age.
+     * @param foodLevel The animal's food level.
+     */
+    abstract protected void restoreCondition(int age, int foodLevel);
+    
+    /**
+     * Return the parameters of the simulation the animal is in.
+     * @return The simulation's parameters.
+     */
+    protected SimulationParameters getParameters()
+    {
+        return parameters;
+    }
+    
+    /**
+     * Return the parameters of the animal's species, such as its
+     * breeding age and lifespan.
+     * @return The species' parameters.
+     */
+    protected SpeciesParameters getTraits()
+    {
+        return traits;
+    }
+    
+    /**
+     * Return the clock the animal's age and food level are measured by.
+     * @return The field's lifecycle scheduler.
+     */
+    protected LifecycleScheduler getLifecycle()
+    {
+        return lifecycle;
+    }
+    
+    /**
+     * Make the animal die if it has reached its death step. When deaths
+     * are scheduled the scheduler has already seen to that, so this does
+     * nothing.
+     */
+    protected void dieIfDue()
+    {
+        if(alive && !lifecycle.isScheduled() && getDeathStep() <= lifecycle.getStep()) {
+            setDead();
+        }
+    }
     
     /**
      * Check whether the animal is alive or not.
@@ -80,20 +169,25 @@ public abstract class Animal
     protected void setDead()
     {
         alive = false;
-        if(location != null) {
-            field.clear(location);
-            location = null;
+        if(cell >= 0) {
+            field.getStats().decrementCount(getSpecies());
+            if(isInfected) {
+                field.getStats().decrementInfected(getSpecies());
+            }
+            field.clear(cell);
+            cell = -1;
             field = null;
         }
     }
 
     /**
-     * Return the animal's location.
-     * @return The animal's location.
+     * Return the animal's location. Each call makes a new Location;
+     * code that runs every step should use getCell instead.
+     * @return The animal's location, or null if it has died.
      */
     protected Location getLocation()
     {
-        return location;
+        return cell >= 0 ? field.getLocation(cell) : null;
     }
     
     /**
@@ -102,11 +196,29 @@ public abstract class Animal
      */
     protected void setLocation(Location newLocation)
     {
-        if(location != null) {
-            field.clear(location);
+        setCell(field.getCell(newLocation));
+    }
+    
+    /**
+     * Return the index of the animal's cell in the field.
+     * @return The index of the cell, or -1 if the animal has died.
+     */
+    protected int getCell()
+    {
+        return cell;
+    }
+    
+    /**
+     * Move the animal to a new cell in its field.
+     * @param newCell The index of the animal's new cell.
+     */
+    protected void setCell(int newCell)
+    {
+        if(cell >= 0) {
+            field.clear(cell);
         }
-        location = newLocation;
-        field.place(this, newLocation);
+        cell = newCell;
+        field.place(this, newCell);
     }
     
     /**
@@ -119,25 +231,82 @@ public abstract class Animal
     }
     
     /**
-     * Randomly assigns an animal to be either Male or Female
+     * Find the cells adjacent to this animal, in a random order.
+     * They can then be read with getAdjacentCell until the next query.
+     * @return The number of adjacent cells.
      */
-    private void setSex()
+    protected int findAdjacentCells()
     {
-        isMale = rand.nextBoolean();
+        return field.adjacentCells(cell, adjacentCells);
     }
     
     /**
-     * The probability that the disease spreads depends on the weather
-     * It is more likely to spread if it's raining
+     * Find the free cells adjacent to this animal, in a random order.
+     * They can then be read with getAdjacentCell until the next query.
+     * @return The number of free adjacent cells.
      */
-    private void diseaseSpreadProb()
+    protected int findFreeAdjacentCells()
     {
-        if (field.getWeather().getIsRaining()) {
-            diseaseSpreadProbability = 0.025;
-        }
-        else {
-            diseaseSpreadProbability = 0.01;
+        return field.freeAdjacentCells(cell, adjacentCells);
+    }
+    
+    /**
+     * Find the first cell adjacent to this animal, in a random order,
+     * holding an animal of one of the given species and of the given sex.
+     * @param speciesMask The species wanted, a bit for each (see Species.bit).
+     * @param sex Field.ANY_SEX, Field.MALE or Field.FEMALE.
+     * @return The index of the cell, or -1 if there is none.
+     */
+    protected int findAdjacentAnimal(int speciesMask, int sex)
+    {
+        return field.findAdjacentAnimal(cell, speciesMask, sex);
+    }
+    
+    /**
+     * Return the sex a mate of this animal must be.
+     * @return Field.FEMALE for a male, Field.MALE for a female.
+     */
+    protected int getOppositeSex()
+    {
+        return isMale ? Field.FEMALE : Field.MALE;
+    }
+    
+    /**
+     * Return one of the cells found by the last neighbourhood query.
+     * @param index Which of the cells to return.
+     * @return The index of the cell in the field.
+     */
+    protected int getAdjacentCell(int index)
+    {
+        return adjacentCells[index];
+    }
+    
+    /**
+     * Give the animal the sex, infection, age and food level it had
+     * when a simulation was saved.
+     * @param male Whether the animal is male.
+     * @param infected Whether the animal is infected.
+     * @param age The animal's age.
+     * @param foodLevel The animal's food level.
+     */
+    void restore(boolean male, boolean infected, int age, int foodLevel)
+    {
+        if(male != isMale) {
+            // Take the animal out and put it back, so the field records its sex.
+            field.clear(cell);
+            isMale = male;
+            field.place(this, cell);
         }
+        setInfected(infected);
+        restoreCondition(age, foodLevel);
+    }
+    
+    /**
+     * Randomly assigns an animal to be either Male or Female
+     */
+    private void setSex()
+    {
+        isMale = rand.nextBoolean();
     }
     
     /**
@@ -145,11 +314,11 @@ public abstract class Animal
      */
     protected void catchDisease() 
     {
-        if(rand.nextDouble() <= INFECTED_PROBABILITY) {
-            isInfected = true;
+        if(rand.nextDouble() <= parameters.getInfectedProbability()) {
+            setInfected(true);
         }
         else {
-            isInfected = false;
+            setInfected(false);
         }
     }
     
@@ -165,12 +334,14 @@ public abstract class Animal
     /**
      * There is a chance that an animal may become infected
      * This sets isInfected to 'true' if a random double is 
-     * less than diseaseSpreadProbability
+     * less than the probability of the disease spreading
+     * @param probability The probability of the disease spreading, which
+     *                    depends on the weather.
      */
-    protected void infect() 
+    protected void infect(double probability) 
     {
-        if(rand.nextDouble() <= diseaseSpreadProbability) {
-            isInfected = true;
+        if(rand.nextDouble() <= probability) {
+            setInfected(true);
         }
     }
     
@@ -179,25 +350,42 @@ public abstract class Animal
      */
     protected void infectAnimal()
     {
-        isInfected = true;
+        setInfected(true);
+    }
+    
+    /**
+     * Change whether the animal is infected, keeping the field's count
+     * of infected animals up to date.
+     * @param infected Whether the animal is now infected.
+     */
+    private void setInfected(boolean infected)
+    {
+        if(infected != isInfected && cell >= 0) {
+            if(infected) {
+                field.getStats().incrementInfected(getSpecies());
+            }
+            else {
+                field.getStats().decrementInfected(getSpecies());
+            }
+            field.updateInfected(cell, infected);
+        }
+        isInfected = infected;
     }
     
     /**
      * This infects other animals around an animal if those other
      * animals aren't infected
+     * @param environment The conditions of the current step.
      */
-    protected void spreadDisease()
+    protected void spreadDisease(Environment environment)
     {
-        diseaseSpreadProb();
-        List<Location> adjacent = getField().adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
+        int adjacent = findAdjacentCells();
+        for(int i = 0; i < adjacent; i++) {
+            Object animal = field.getObjectAt(getAdjacentCell(i));
             if(animal instanceof Animal) {
                 Animal adjAnimal = (Animal) animal;
                 if (!adjAnimal.isInfected()) {
-                    adjAnimal.infect();
+                    adjAnimal.infect(environment.getDiseaseSpreadProbability());
                 }
             }
         }
@@ -208,11 +396,17 @@ public abstract class Animal
      * around it
      * But if the animal isn't diseased, then there's a very small chance
      * it will get the disease
+     * Does nothing when the field spreads disease in a phase of its own
+     * (see Epidemic).
+     * @param environment The conditions of the current step.
      */
-    protected void animalIsDiseased()
+    protected void animalIsDiseased(Environment environment)
     {
+        if (field.isBatchedEpidemic()) {
+            return;
+        }
         if (this.isInfected()){
-            spreadDisease();
+            spreadDisease(environment);
         }
         else {
             catchDisease();
@@ -226,7 +420,7 @@ public abstract class Animal
     protected void matingDisease(Animal animal)
     {
         if (this.isInfected()){
-            if (rand.nextDouble() <= MATING_DISEASE_SPREAD) {
+            if (rand.nextDouble() <= parameters.getMatingDiseaseSpread()) {
                 animal.infectAnimal();
             }
         }
@@ -239,7 +433,7 @@ public abstract class Animal
      */
     protected boolean deathByDisease()
     {
-        if (isInfected() && rand.nextDouble() <= DISEASE_DEATH_PROBABILITY) {
+        if (isInfected() && rand.nextDouble() <= parameters.getDiseaseDeathProbability()) {
             setDead();
             return true;
         }
@@ -0,0 +1,264 @@
+import java.util.Random;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The hot paths of the simulation, for the JMH microbenchmarks in
+ * benchmarks.HotPaths to measure, so that every optimisation can be
+ * measured against the code it replaces. JMH will not generate
+ * benchmarks in the default package, where the simulation lives, so
+ * the benchmarks there call the operations through this class. Build
+ * them with Maven (see pom.xml).
+ *
+ * Run it with the grid sizes and initial densities to try, e.g.
+ *     java Benchmark 130x200,1000x1000 0.2,0.5
+ * or pass the same as JMH parameters to target/benchmarks.jar. The
+ * density is the fraction of cells holding an animal, split between the
+ * species in proportion to the simulator's creation probabilities. The
+ * full simulation step starts from such a population too, and goes back
+ * to it whenever the simulation stops being viable. The view draws
+ * offscreen, so it is measured even without a display.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class Benchmark implements benchmarks.HotPaths.Workload
+{
+    // The default grid sizes and densities.
+    private static final String DEFAULT_SIZES = "130x200,500x500";
+    private static final String DEFAULT_DENSITIES = "0.5";
+
+    // The populated field the field-level operations work on.
+    private Field field;
+    // Chooses the cells the operations start from.
+    private Random rand;
+    // The number of cells in the field.
+    private int cells;
+    // Receives the cells found by the operations.
+    private int[] buffer;
+    // Krill grown cell by cell, as earlier versions did.
+    private KrillLayer cellByCell;
+    // An offscreen view of the field.
+    private SimulatorView view;
+    // A headless simulation, and the population it starts from.
+    private Simulator simulator;
+    private SimulationState start;
+
+    /**
+     * Run every benchmark for each combination of grid size and density.
+     * @param args The grid sizes (depth x width, separated by commas) and
+     *             the densities (separated by commas), both optional.
+     * @throws RunnerException If JMH fails to run the benchmarks.
+     */
+    public static void main(String[] args) throws RunnerException
+    {
+        String sizes = args.length > 0 ? args[0] : DEFAULT_SIZES;
+        String densities = args.length > 1 ? args[1] : DEFAULT_DENSITIES;
+        Options options = new OptionsBuilder()
+            .include("^" + benchmarks.HotPaths.class.getName() + "\\.")
+            .param("grid", sizes.split(","))
+            .param("density", densities.split(","))
+            .build();
+        new Runner(options).run();
+    }
+
+    /**
+     * Populate a field, an offscreen view and a simulation of the given
+     * size and density.
+     * @param grid The size of the field, as depth x width.
+     * @param density The fraction of cells holding an animal.
+     */
+    public void setUp(String grid, double density)
+    {
+        String[] dimensions = grid.split("x");
+        int depth = Integer.parseInt(dimensions[0].trim());
+        int width = Integer.parseInt(dimensions[1].trim());
+        Randomizer.reset();
+        field = new Field(depth, width);
+        populate(field, density);
+        rand = new Random(1);
+        cells = depth * width;
+        buffer = new int[Field.MAX_ADJACENT];
+        cellByCell = new KrillLayer(cells);
+        cellByCell.setBulkGrowth(false);
+        view = new SimulatorView(depth, width, false);
+
+        simulator = new Simulator(depth, width, false);
+        start = simulator.captureState();
+        populate(start, density);
+        simulator.restoreState(start);
+    }
+
+    /**
+     * Stop the view drawing.
+     */
+    public void tearDown()
+    {
+        view.dispose();
+    }
+
+    /**
+     * @return The locations next to a random cell.
+     */
+    public Object adjacentLocations()
+    {
+        return field.adjacentLocations(field.getLocation(rand.nextInt(cells)));
+    }
+
+    /**
+     * @return The number of cells next to a random cell, which are left
+     *         in the buffer.
+     */
+    public int adjacentCells()
+    {
+        return field.adjacentCells(rand.nextInt(cells), buffer);
+    }
+
+    /**
+     * @return The free locations next to a random cell.
+     */
+    public Object getFreeAdjacentLocations()
+    {
+        return field.getFreeAdjacentLocations(field.getLocation(rand.nextInt(cells)));
+    }
+
+    /**
+     * @return The number of free cells next to a random cell, which are left
+     *         in the buffer.
+     */
+    public int freeAdjacentCells()
+    {
+        return field.freeAdjacentCells(rand.nextInt(cells), buffer);
+    }
+
+    /**
+     * Grow the field's krill once.
+     * @return The krill in the first cell.
+     */
+    public int growKrill()
+    {
+        field.growKrill(0.8);
+        return field.getKrillAt(0, 0);
+    }
+
+    /**
+     * Grow krill cell by cell, as earlier versions did.
+     * @return The krill in the first cell.
+     */
+    public int growKrillCellByCell()
+    {
+        cellByCell.grow(0.8);
+        return cellByCell.get(0);
+    }
+
+    /**
+     * @return The field's population details.
+     */
+    public Object getPopulationDetails()
+    {
+        return field.getStats().getPopulationDetails();
+    }
+
+    /**
+     * Draw the field into the offscreen view's image.
+     * @return The view.
+     */
+    public Object showStatus()
+    {
+        view.showStatus(0, field, 1, "Normal");
+        return view;
+    }
+
+    /**
+     * Run a full step of the simulation, going back to the starting
+     * population whenever it stops being viable.
+     * @return The simulation.
+     */
+    public Object simulateOneStep()
+    {
+        if(!simulator.isViable()) {
+            simulator.restoreState(start);
+        }
+        simulator.simulateOneStep();
+        return simulator;
+    }
+
+    /**
+     * Replace the animals of a snapshot with a population of the given
+     * density, leaving the rest of it alone.
+     * @param state The snapshot to fill in.
+     * @param density The fraction of cells holding an animal.
+     */
+    private static void populate(SimulationState state, double density)
+    {
+        Field scratch = new Field(state.depth, state.width);
+        populate(scratch, density);
+        int count = 0;
+        for(int cell = 0; cell < state.depth * state.width; cell++) {
+            if(scratch.getObjectAt(cell) instanceof Animal) {
+                count++;
+            }
+        }
+        state.setAnimalCount(count);
+        int index = 0;
+        for(int cell = 0; cell < state.depth * state.width; cell++) {
+            Object occupant = scratch.getObjectAt(cell);
+            if(occupant instanceof Animal) {
+                Animal animal = (Animal) occupant;
+                state.species[index] = (byte) animal.getSpecies();
+                state.cells[index] = cell;
+                state.ages[index] = animal.getAge();
+                state.foodLevels[index] = animal.getFoodLevel();
+                state.flags[index] = (byte) ((animal.isMale() ? SimulationState.MALE : 0)
+                                             | (animal.isInfected() ? SimulationState.INFECTED : 0));
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Fill a field with animals. Each cell holds an animal with the given
+     * probability, its species chosen in proportion to the simulator's
+     * creation probabilities. The animals place themselves in the field.
+     * @param field The field to fill.
+     * @param density The fraction of cells holding an animal.
+     */
+    private static void populate(Field field, double density)
+    {
+        Random rand = Randomizer.getRandom();
+        double[] weights = {
+            Simulator.FOX_CREATION_PROBABILITY, Simulator.RABBIT_CREATION_PROBABILITY,
+            Simulator.MEGALODON_CREATION_PROBABILITY, Simulator.WHALE_CREATION_PROBABILITY,
+            Simulator.JELLYFISH_CREATION_PROBABILITY,
+        };
+        double total = 0;
+        for(double weight : weights) {
+            total += weight;
+        }
+        for(int row = 0; row < field.getDepth(); row++) {
+            for(int col = 0; col < field.getWidth(); col++) {
+                if(rand.nextDouble() >= density) {
+                    continue;
+                }
+                int cell = field.getCell(row, col);
+                double choice = rand.nextDouble() * total;
+                if((choice -= weights[0]) < 0) {
+                    new Fox(true, field, cell);
+                }
+                else if((choice -= weights[1]) < 0) {
+                    new Rabbit(true, field, cell);
+                }
+                else if((choice -= weights[2]) < 0) {
+                    new Megalodon(true, field, cell);
+                }
+                else if((choice -= weights[3]) < 0) {
+                    new Whale(true, field, cell);
+                }
+                else {
+                    new Jellyfish(true, field, cell);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Where a simulation keeps the values it holds for every cell of its
+ * grid, such as the krill: on the heap, in direct memory off the heap,
+ * or in memory-mapped files. Off the heap, a large grid adds nothing to
+ * the garbage collector's work; mapped, it can be larger than memory.
+ *
+ * Animals themselves are objects, so a Field always keeps them on the
+ * heap; a ColumnarSimulator, whose grid holds only ints, can keep the
+ * whole grid off it.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class CellStorage
+{
+    // The kinds of storage.
+    public static final String HEAP_KIND = "heap";
+    public static final String OFF_HEAP_KIND = "offheap";
+    public static final String MAPPED_KIND = "mapped";
+
+    // Ordinary arrays on the heap.
+    public static final CellStorage HEAP = new CellStorage(HEAP_KIND, null);
+    // Direct memory outside the heap.
+    public static final CellStorage OFF_HEAP = new CellStorage(OFF_HEAP_KIND, null);
+
+    // One of the kinds above.
+    private final String kind;
+    // The directory mapped files are made in, or null if none are.
+    private final Path directory;
+
+    /**
+     * @param kind The kind of storage.
+     * @param directory The directory for mapped files, if any.
+     */
+    private CellStorage(String kind, Path directory)
+    {
+        this.kind = kind;
+        this.directory = directory;
+    }
+
+    /**
+     * Return storage in files mapped into memory, made in the given
+     * directory and deleted again as soon as they are mapped.
+     * @param directory The directory, which should have room for the grid.
+     * @return The storage.
+     */
+    public static CellStorage mapped(Path directory)
+    {
+        return new CellStorage(MAPPED_KIND, directory);
+    }
+
+    /**
+     * Return the storage named by a string: "heap", "offheap", or
+     * "mapped:" followed by a directory.
+     * @param name The name of the storage.
+     * @return The storage.
+     * @throws IllegalArgumentException If the name is not recognised.
+     */
+    public static CellStorage forName(String name)
+    {
+        if(name.equals(HEAP_KIND)) {
+            return HEAP;
+        }
+        else if(name.equals(OFF_HEAP_KIND)) {
+            return OFF_HEAP;
+        }
+        else if(name.startsWith(MAPPED_KIND + ":")) {
+            return mapped(Paths.get(name.substring(MAPPED_KIND.length() + 1)));
+        }
+        throw new IllegalArgumentException("Unknown cell storage: " + name);
+    }
+
+    /**
+     * Make a value for each cell, all zero.
+     * @param length The number of cells.
+     * @return The values.
+     */
+    public IntCells allocate(int length)
+    {
+        if(kind.equals(OFF_HEAP_KIND)) {
+            return IntCells.offHeap(length);
+        }
+        else if(kind.equals(MAPPED_KIND)) {
+            return IntCells.mapped(length, directory);
+        }
+        return IntCells.onHeap(length);
+    }
+
+    /**
+     * @return The kind of storage.
+     */
+    public String getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * @return The name of the storage, as accepted by forName.
+     */
+    public String toString()
+    {
+        return directory == null ? kind : kind + ":" + directory;
+    }
+}
@@ -0,0 +1,877 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * A headless version of the simulator for very large populations.
+ * Instead of one object per animal, each species keeps its animals in
+ * columns of primitive values (age, food level, sex, infection and cell),
+ * and the grid is an array of handles into those columns. This avoids
+ * pointer chasing and garbage collection when there are millions of
+ * animals.
+ *
+ * Since the grid and the krill hold only ints, they can be kept off the
+ * heap, or in memory-mapped files for grids larger than memory, by
+ * giving the simulator a CellStorage.
+ *
+ * The rules are those of the Fox, Rabbit, Megalodon, Whale and Jellyfish
+ * classes. The one difference is the order in which animals act: each
+ * species acts in turn, rather than all animals acting in order of birth.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class ColumnarSimulator
+{
+    // The default width for the grid.
+    private static final int DEFAULT_WIDTH = 200;
+    // The default depth of the grid.
+    private static final int DEFAULT_DEPTH = 130;
+
+    private static final int STEPS_IN_DAY = 24;
+    // The low bits of a handle hold the species, the rest the index in its columns.
+    private static final int SPECIES_BITS = 3;
+    private static final int SPECIES_MASK = (1 << SPECIES_BITS) - 1;
+    // The grid value of an empty cell, and the cell of an animal that has died.
+    private static final int EMPTY = -1;
+
+    private static final Random rand = Randomizer.getRandom();
+
+    // The depth and width of the grid.
+    private int depth, width;
+    // The handle of the animal in each cell, or EMPTY.
+    private IntCells grid;
+    // The neighbours of each cell.
+    private Adjacency adjacency;
+    // The krill in each cell.
+    private KrillLayer krill;
+
+    private Weather weather;
+    // The parameters of the simulation.
+    private SimulationParameters parameters;
+    // The parameters of each species, indexed by species number.
+    private SpeciesParameters[] traits;
+    // The animals of each species, indexed by species number.
+    private Columns[] species;
+    // Scratch space for neighbourhood queries.
+    private int[] adjacent, free;
+    // The time of day, weather and probabilities of the current step.
+    private Environment environment;
+    // Keeps track of day and night
+    private boolean isDay;
+    // The current step of the simulation.
+    private int step;
+
+    private int day;
+
+    private int hour;
+
+    /**
+     * Construct a simulation field with default size.
+     */
+    public ColumnarSimulator()
+    {
+        this(DEFAULT_DEPTH, DEFAULT_WIDTH);
+    }
+
+    /**
+     * Create a simulation field with the given size.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     */
+    public ColumnarSimulator(int depth, int width)
+    {
+        this(depth, width, SimulationParameters.DEFAULTS);
+    }
+
+    /**
+     * Create a simulation field with the given size, whose animals,
+     * krill and weather follow the given parameters.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param parameters The parameters of the simulation.
+     */
+    public ColumnarSimulator(int depth, int width, SimulationParameters parameters)
+    {
+        this(depth, width, parameters, CellStorage.HEAP);
+    }
+
+    /**
+     * Create a simulation field with the given size and parameters,
+     * keeping the grid and the krill in the given storage.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param parameters The parameters of the simulation.
+     * @param storage Where to keep the values for each cell.
+     */
+    public ColumnarSimulator(int depth, int width, SimulationParameters parameters, CellStorage storage)
+    {
+        if(width <= 0 || depth <= 0) {
+            System.out.println("The dimensions must be greater than zero.");
+            System.out.println("Using default values.");
+            depth = DEFAULT_DEPTH;
+            width = DEFAULT_WIDTH;
+        }
+        this.depth = depth;
+        this.width = width;
+        grid = storage.allocate(depth * width);
+        adjacency = new Adjacency(depth, width);
+        this.parameters = parameters;
+        krill = new KrillLayer(depth * width, parameters, storage);
+        weather = new Weather(parameters);
+        traits = new SpeciesParameters[Species.COUNT];
+        species = new Columns[Species.COUNT];
+        for(int s = 0; s < Species.COUNT; s++) {
+            traits[s] = parameters.getSpecies(s);
+            species[s] = new Columns();
+        }
+        adjacent = new int[Adjacency.MAX_ADJACENT];
+        free = new int[Adjacency.MAX_ADJACENT];
+
+        reset();
+    }
+
+    /**
+     * Choose whether the krill grow lazily, only doing work where they
+     * are grazed.
+     * @param lazy true for lazy growth.
+     */
+    public void setLazyKrill(boolean lazy)
+    {
+        krill.setLazy(lazy);
+    }
+
+    /**
+     * Choose whether krill growing eagerly grow by the bulk kernel, or
+     * cell by cell as in earlier versions. Turning it off also makes
+     * populating draw for every cell, as they did, from the next reset on.
+     * @param bulk true for the bulk kernel.
+     */
+    public void setBulkGrowth(boolean bulk)
+    {
+        krill.setBulkGrowth(bulk);
+    }
+
+    /**
+     * Run the simulation from its current state for a reasonably long period,
+     * (4000 steps).
+     */
+    public void runLongSimulation()
+    {
+        simulate(4000);
+    }
+
+    /**
+     * Run the simulation from its current state for the given number of steps.
+     * Stop before the given number of steps if it ceases to be viable.
+     * @param numSteps The number of steps to run for.
+     */
+    public void simulate(int numSteps)
+    {
+        for(int step = 1; step <= numSteps && isViable(); step++) {
+            simulateOneStep();
+        }
+    }
+
+    /**
+     * Run the simulation from its current state for a single step.
+     * Each species acts in turn, then the dead are removed from the
+     * columns and the krill grow.
+     */
+    public void simulateOneStep()
+    {
+        step++;
+        hour++;
+        incrementDay();
+        checkTimeOfDay();
+        weather.simulateWeather();
+        environment = new Environment(step, day, isDay, weather, parameters, false);
+
+        for(int s = 0; s < Species.COUNT; s++) {
+            // Animals born during the step are appended, and do not act yet.
+            int count = species[s].size;
+            for(int i = 0; i < count; i++) {
+                if(species[s].cells[i] != EMPTY) {
+                    act(s, i);
+                }
+            }
+        }
+        for(int s = 0; s < Species.COUNT; s++) {
+            compact(s);
+        }
+
+        krill.grow(environment);
+    }
+
+    /**
+     * Reset the simulation to a starting position.
+     */
+    public void reset()
+    {
+        step = 0;
+        day = 1;
+        hour = 6;
+        populate();
+        checkTimeOfDay();
+    }
+
+    /**
+     * Determine whether the simulation should continue to run.
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable()
+    {
+        int nonZero = 0;
+        for(int s = 0; s < Species.COUNT; s++) {
+            if(species[s].size > 0) {
+                nonZero++;
+            }
+        }
+        return nonZero > 1;
+    }
+
+    /**
+     * Return the number of animals of a species. This is exact
+     * between steps.
+     * @param speciesNumber The species, as numbered by Species.
+     * @return How many of them are alive.
+     */
+    public int getCount(int speciesNumber)
+    {
+        return species[speciesNumber].size;
+    }
+
+    /**
+     * Get details of what is in the field.
+     * @return A string describing what is in the field.
+     */
+    public String getPopulationDetails()
+    {
+        StringBuilder buffer = new StringBuilder();
+        for(int s = 0; s < Species.COUNT; s++) {
+            buffer.append(Species.getName(s));
+            buffer.append(": ");
+            buffer.append(species[s].size);
+            buffer.append(' ');
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Return the species of the animal at the given position, if any.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return The species number, or -1 if the cell is empty.
+     */
+    public int getSpeciesAt(int row, int col)
+    {
+        int handle = grid.get(row * width + col);
+        return handle == EMPTY ? -1 : handle & SPECIES_MASK;
+    }
+
+    /**
+     * Return whether the animal at the given position is infected.
+     * @param row The desired row.
+     * @param col The desired column.
+     * @return true if there is an infected animal there.
+     */
+    public boolean isInfectedAt(int row, int col)
+    {
+        int handle = grid.get(row * width + col);
+        return handle != EMPTY && species[handle & SPECIES_MASK].infected[handle >>> SPECIES_BITS];
+    }
+
+    /**
+     * @return The current step of the simulation.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The current day of the simulation.
+     */
+    public int getDay()
+    {
+        return day;
+    }
+
+    /**
+     * @return The depth of the field.
+     */
+    public int getDepth()
+    {
+        return depth;
+    }
+
+    /**
+     * @return The width of the field.
+     */
+    public int getWidth()
+    {
+        return width;
+    }
+
+    /**
+     * Returns the weather of the field
+     * @return the weather of the field
+     */
+    public Weather getWeather()
+    {
+        return weather;
+    }
+
+    /**
+     * Make one animal act according to the rules of its species.
+     * @param s The animal's species.
+     * @param i The animal's index in its species' columns.
+     */
+    private void act(int s, int i)
+    {
+        switch(s) {
+            case Species.FOX:
+                actFox(i);
+                break;
+            case Species.RABBIT:
+                actPrey(Species.RABBIT, i);
+                break;
+            case Species.MEGALODON:
+                actMegalodon(i);
+                break;
+            case Species.WHALE:
+                actPrey(Species.WHALE, i);
+                break;
+            case Species.JELLYFISH:
+                actJellyfish(i);
+                break;
+        }
+    }
+
+    /**
+     * A fox hunts for rabbits by day, and sometimes at night.
+     * It may breed, die of hunger, old age or disease.
+     * @param i The fox's index.
+     */
+    private void actFox(int i)
+    {
+        Columns foxes = species[Species.FOX];
+        SpeciesParameters fox = traits[Species.FOX];
+        if(!ageAndHunger(Species.FOX, i, fox.getMaxAge())) {
+            return;
+        }
+        if(environment.isDay()) {
+            if(diseaseKills(Species.FOX, i)) {
+                return;
+            }
+            findMate(Species.FOX, i, fox.getBreedingAge(), fox.getBreedingProbability(),
+                     fox.getMaxLitterSize(), fox.getHungerCap() / 3);
+            hunt(Species.FOX, i);
+        }
+        else if(foxes.foodLevels[i] < fox.getNightHuntingFoodLevel()
+                || rand.nextDouble() <= fox.getNightMovingProbability()) {
+            hunt(Species.FOX, i);
+        }
+    }
+
+    /**
+     * A megalodon hunts for rabbits, whales and foxes by day, and
+     * at night if it is hungry or restless.
+     * It may breed, die of hunger, old age or disease.
+     * @param i The megalodon's index.
+     */
+    private void actMegalodon(int i)
+    {
+        Columns megalodons = species[Species.MEGALODON];
+        SpeciesParameters megalodon = traits[Species.MEGALODON];
+        if(!ageAndHunger(Species.MEGALODON, i, megalodon.getMaxAge())) {
+            return;
+        }
+        if(environment.isDay()) {
+            if(diseaseKills(Species.MEGALODON, i)) {
+                return;
+            }
+            findMate(Species.MEGALODON, i, megalodon.getBreedingAge(), megalodon.getBreedingProbability(),
+                     megalodon.getMaxLitterSize(), parameters.getDefaultFoodLevel());
+            hunt(Species.MEGALODON, i);
+        }
+        else if(megalodons.foodLevels[i] < megalodon.getNightHuntingFoodLevel()
+                || rand.nextDouble() <= megalodon.getNightMovingProbability()) {
+            hunt(Species.MEGALODON, i);
+        }
+    }
+
+    /**
+     * A rabbit or whale mates, eats krill and moves by day. At night it
+     * stays where it is and its food level does not drop, but it can
+     * still spread and die from disease.
+     * @param s The species, rabbit or whale.
+     * @param i The animal's index.
+     */
+    private void actPrey(int s, int i)
+    {
+        Columns prey = species[s];
+        SpeciesParameters kind = traits[s];
+        int hungerCap = kind.getHungerCap();
+        if(!ageAndHunger(s, i, kind.getMaxAge())) {
+            return;
+        }
+        if(environment.isDay()) {
+            if(diseaseKills(s, i)) {
+                return;
+            }
+            findMate(s, i, kind.getBreedingAge(), kind.getBreedingProbability(),
+                     kind.getMaxLitterSize(), hungerCap / 2);
+            prey.foodLevels[i] += krill.eat(hungerCap - prey.foodLevels[i], prey.cells[i]);
+            moveOrDie(s, i);
+        }
+        else {
+            prey.foodLevels[i]++;
+            diseaseKills(s, i);
+        }
+    }
+
+    /**
+     * A jellyfish drifts about, never needing food. Very rarely it
+     * reproduces by itself. It may die of old age or disease.
+     * @param i The jellyfish's index.
+     */
+    private void actJellyfish(int i)
+    {
+        Columns jellyfish = species[Species.JELLYFISH];
+        SpeciesParameters kind = traits[Species.JELLYFISH];
+        jellyfish.ages[i]++;
+        if(jellyfish.ages[i] > kind.getMaxAge()) {
+            kill(Species.JELLYFISH, i);
+            return;
+        }
+        if(diseaseKills(Species.JELLYFISH, i)) {
+            return;
+        }
+        giveBirth(Species.JELLYFISH, i, kind.getBreedingAge(), kind.getBreedingProbability(),
+                  kind.getMaxLitterSize(), 0);
+        moveOrDie(Species.JELLYFISH, i);
+    }
+
+    /**
+     * Make an animal older and hungrier. Either could result in its death.
+     * @param s The animal's species.
+     * @param i The animal's index.
+     * @param maxAge The age to which the species can live.
+     * @return true if the animal is still alive.
+     */
+    private boolean ageAndHunger(int s, int i, int maxAge)
+    {
+        Columns agents = species[s];
+        agents.ages[i]++;
+        agents.foodLevels[i]--;
+        if(agents.ages[i] > maxAge || agents.foodLevels[i] <= 0) {
+            kill(s, i);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * An infected animal tries to infect its neighbours; a healthy one
+     * has a very small chance of catching the disease. Infected animals
+     * then have a small chance of dying.
+     * @param s The animal's species.
+     * @param i The animal's index.
+     * @return true if the animal died of the disease.
+     */
+    private boolean diseaseKills(int s, int i)
+    {
+        Columns agents = species[s];
+        if(agents.infected[i]) {
+            spreadDisease(agents.cells[i]);
+        }
+        else if(rand.nextDouble() <= parameters.getInfectedProbability()) {
+            agents.infected[i] = true;
+        }
+
+        if(agents.infected[i] && rand.nextDouble() <= parameters.getDiseaseDeathProbability()) {
+            kill(s, i);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Give every healthy neighbour of a cell a chance of being infected.
+     * @param cell The cell of an infected animal.
+     */
+    private void spreadDisease(int cell)
+    {
+        int count = adjacency.adjacentCells(cell, adjacent, rand);
+        for(int k = 0; k < count; k++) {
+            int handle = grid.get(adjacent[k]);
+            if(handle != EMPTY) {
+                Columns other = species[handle & SPECIES_MASK];
+                int j = handle >>> SPECIES_BITS;
+                if(!other.infected[j] && rand.nextDouble() <= environment.getDiseaseSpreadProbability()) {
+                    other.infected[j] = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Look for an animal of the same species and opposite sex next to
+     * this one. If there is one, they may breed, and the disease may
+     * pass between them.
+     * @param s The animal's species.
+     * @param i The animal's index.
+     * @param breedingAge The age at which the species can start to breed.
+     * @param breedingProbability The likelihood of it breeding.
+     * @param maxLitterSize The maximum number of births.
+     * @param newbornFood The food level of a newborn.
+     */
+    private void findMate(int s, int i, int breedingAge, double breedingProbability,
+                          int maxLitterSize, int newbornFood)
+    {
+        Columns agents = species[s];
+        int count = adjacency.adjacentCells(agents.cells[i], adjacent, rand);
+        for(int k = 0; k < count; k++) {
+            int handle = grid.get(adjacent[k]);
+            if(handle != EMPTY && (handle & SPECIES_MASK) == s) {
+                int mate = handle >>> SPECIES_BITS;
+                if(agents.males[mate] != agents.males[i]) {
+                    giveBirth(s, i, breedingAge, breedingProbability, maxLitterSize, newbornFood);
+                    if(agents.infected[i] && rand.nextDouble() <= parameters.getMatingDiseaseSpread()) {
+                        agents.infected[mate] = true;
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether or not an animal is to give birth at this step.
+     * New births will be made into free adjacent cells.
+     * @param s The animal's species.
+     * @param i The animal's index.
+     * @param breedingAge The age at which the species can start to breed.
+     * @param breedingProbability The likelihood of it breeding.
+     * @param maxLitterSize The maximum number of births.
+     * @param newbornFood The food level of a newborn.
+     */
+    private void giveBirth(int s, int i, int breedingAge, double breedingProbability,
+                           int maxLitterSize, int newbornFood)
+    {
+        Columns agents = species[s];
+        int freeCount = freeAdjacentCells(agents.cells[i], free);
+        int births = 0;
+        if(agents.ages[i] >= breedingAge && rand.nextDouble() <= breedingProbability) {
+            births = rand.nextInt(maxLitterSize) + 1;
+        }
+        for(int b = 0; b < births && b < freeCount; b++) {
+            add(s, free[b], rand.nextBoolean(), 0, newbornFood);
+        }
+    }
+
+    /**
+     * A predator eats a neighbouring animal if it can and moves into its
+     * cell. Otherwise it tries to move to a free cell, and dies of
+     * overcrowding if there is none.
+     * @param s The predator's species.
+     * @param i The predator's index.
+     */
+    private void hunt(int s, int i)
+    {
+        int target = findFood(s, i);
+        if(target == EMPTY) {
+            target = freeAdjacentCell(species[s].cells[i]);
+        }
+        if(target != EMPTY) {
+            move(s, i, target);
+        }
+        else {
+            kill(s, i);
+        }
+    }
+
+    /**
+     * Look for prey adjacent to a predator. Only the first animal
+     * it can eat is eaten, and eating an infected animal may infect
+     * the predator.
+     * @param s The predator's species, fox or megalodon.
+     * @param i The predator's index.
+     * @return The cell where food was found, or EMPTY if none was.
+     */
+    private int findFood(int s, int i)
+    {
+        Columns predators = species[s];
+        int count = adjacency.adjacentCells(predators.cells[i], adjacent, rand);
+        for(int k = 0; k < count; k++) {
+            int where = adjacent[k];
+            int handle = grid.get(where);
+            if(handle == EMPTY) {
+                continue;
+            }
+            int foodValue = traits[s].getFoodValue(handle & SPECIES_MASK);
+            if(foodValue > 0) {
+                int preySpecies = handle & SPECIES_MASK;
+                kill(preySpecies, handle >>> SPECIES_BITS);
+                if(species[preySpecies].infected[handle >>> SPECIES_BITS]
+                   && rand.nextDouble() < parameters.getDiseasedPreyInfection()) {
+                    predators.infected[i] = true;
+                }
+                predators.foodLevels[i] = Math.min(predators.foodLevels[i] + foodValue,
+                                                   traits[s].getHungerCap());
+                return where;
+            }
+        }
+        return EMPTY;
+    }
+
+    /**
+     * Move an animal to a free adjacent cell, or kill it through
+     * overcrowding if there is none.
+     * @param s The animal's species.
+     * @param i The animal's index.
+     */
+    private void moveOrDie(int s, int i)
+    {
+        int target = freeAdjacentCell(species[s].cells[i]);
+        if(target != EMPTY) {
+            move(s, i, target);
+        }
+        else {
+            kill(s, i);
+        }
+    }
+
+    /**
+     * Fill the given array with the free cells adjacent to a cell,
+     * in a random order.
+     * @param cell The cell from which to generate adjacencies.
+     * @param buffer Receives the free cells.
+     * @return The number of free cells.
+     */
+    private int freeAdjacentCells(int cell, int[] buffer)
+    {
+        int[] offsets = adjacency.getOffsets(cell);
+        int count = 0;
+        for(int k = 0; k < offsets.length; k++) {
+            int next = cell + offsets[k];
+            if(grid.get(next) == EMPTY) {
+                buffer[count++] = next;
+            }
+        }
+        Adjacency.shuffle(buffer, count, rand);
+        return count;
+    }
+
+    /**
+     * Pick a free cell adjacent to the given one at random.
+     * @param cell The cell from which to generate an adjacency.
+     * @return A free adjacent cell, or EMPTY if there is none.
+     */
+    private int freeAdjacentCell(int cell)
+    {
+        int count = freeAdjacentCells(cell, free);
+        return count > 0 ? free[0] : EMPTY;
+    }
+
+    /**
+     * Add an animal to its species' columns and place it in the grid.
+     * @param s The species.
+     * @param cell The cell to place it in.
+     * @param male Whether it is male.
+     * @param age Its age.
+     * @param foodLevel Its food level.
+     */
+    private void add(int s, int cell, boolean male, int age, int foodLevel)
+    {
+        int index = species[s].add(cell, male, age, foodLevel);
+        grid.set(cell, index << SPECIES_BITS | s);
+    }
+
+    /**
+     * Move an animal to another cell.
+     * @param s The animal's species.
+     * @param i The animal's index.
+     * @param target The cell to move to.
+     */
+    private void move(int s, int i, int target)
+    {
+        Columns agents = species[s];
+        grid.set(target, grid.get(agents.cells[i]));
+        grid.set(agents.cells[i], EMPTY);
+        agents.cells[i] = target;
+    }
+
+    /**
+     * Remove an animal from the grid. Its columns are reclaimed at the
+     * end of the step.
+     * @param s The animal's species.
+     * @param i The animal's index.
+     */
+    private void kill(int s, int i)
+    {
+        Columns agents = species[s];
+        grid.set(agents.cells[i], EMPTY);
+        agents.cells[i] = EMPTY;
+    }
+
+    /**
+     * Squeeze the dead out of a species' columns, keeping the living
+     * in order and updating their handles in the grid.
+     * @param s The species.
+     */
+    private void compact(int s)
+    {
+        Columns agents = species[s];
+        int kept = 0;
+        for(int i = 0; i < agents.size; i++) {
+            if(agents.cells[i] != EMPTY) {
+                if(kept != i) {
+                    agents.copy(i, kept);
+                }
+                grid.set(agents.cells[kept], kept << SPECIES_BITS | s);
+                kept++;
+            }
+        }
+        agents.size = kept;
+    }
+
+    /**
+     * Keeps count of the day based on the number of steps taken
+     * in the simulator
+     */
+    private void incrementDay()
+    {
+        int time = hour % STEPS_IN_DAY;
+        if (time == 0){
+            day++;
+        }
+    }
+
+    /**
+     * Checks the time of day and changes from day to night and vice-versa
+     */
+    private void checkTimeOfDay()
+    {
+        int time = hour % STEPS_IN_DAY;
+        isDay = time >= 6 && time <= 20;
+    }
+
+    /**
+     * Randomly populate the field with Foxes, Rabbits, Megalodons, Whales
+     * and Jellyfish and reset the krill in the field
+     */
+    private void populate()
+    {
+        grid.fill(EMPTY);
+        for(int s = 0; s < Species.COUNT; s++) {
+            species[s].size = 0;
+        }
+        krill.reset();
+        SpeciesParameters fox = traits[Species.FOX];
+        SpeciesParameters rabbit = traits[Species.RABBIT];
+        SpeciesParameters megalodon = traits[Species.MEGALODON];
+        SpeciesParameters whale = traits[Species.WHALE];
+        SpeciesParameters jellyfish = traits[Species.JELLYFISH];
+        // Jellyfish are rare, so count down the cells to the next one,
+        // unless krill grow cell by cell as in earlier versions, which
+        // drew for every cell.
+        boolean skipping = krill.isBulkGrowth();
+        GeometricSkip jellyfishSkip = new GeometricSkip(jellyfish.getCreationProbability());
+        int untilJellyfish = skipping ? jellyfishSkip.next(rand) : 0;
+        for(int cell = 0; cell < grid.length(); cell++) {
+            if(rand.nextDouble() <= fox.getCreationProbability()) {
+                boolean male = rand.nextBoolean();
+                int age = rand.nextInt(fox.getMaxAge());
+                add(Species.FOX, cell, male, age, rand.nextInt(fox.getHungerCap()));
+            }
+            else if(rand.nextDouble() <= rabbit.getCreationProbability()) {
+                boolean male = rand.nextBoolean();
+                int age = rand.nextInt(rabbit.getMaxAge());
+                add(Species.RABBIT, cell, male, age, rand.nextInt(rabbit.getHungerCap() + 1));
+            }
+            else if(rand.nextDouble() <= megalodon.getCreationProbability()) {
+                boolean male = rand.nextBoolean();
+                int age = rand.nextInt(megalodon.getMaxAge());
+                add(Species.MEGALODON, cell, male, age, rand.nextInt(megalodon.getHungerCap()));
+            }
+            else if(rand.nextDouble() <= whale.getCreationProbability()) {
+                boolean male = rand.nextBoolean();
+                int age = rand.nextInt(whale.getMaxAge());
+                add(Species.WHALE, cell, male, age, rand.nextInt(whale.getHungerCap() + 1));
+            }
+            else if(skipping ? untilJellyfish-- == 0
+                             : rand.nextDouble() <= jellyfish.getCreationProbability()) {
+                boolean male = rand.nextBoolean();
+                add(Species.JELLYFISH, cell, male, rand.nextInt(jellyfish.getMaxAge()), 0);
+                if(skipping) {
+                    untilJellyfish = jellyfishSkip.next(rand);
+                }
+            }
+            // else leave the cell empty.
+        }
+    }
+
+    /**
+     * The animals of one species, stored as parallel arrays of primitive
+     * values. An animal's index is its position in the arrays; a dead
+     * animal has its cell set to EMPTY until the columns are compacted.
+     */
+    private static class Columns
+    {
+        private static final int INITIAL_CAPACITY = 1024;
+
+        // The number of animals in the columns, living or dead.
+        private int size;
+        private int[] cells;
+        private int[] ages;
+        private int[] foodLevels;
+        private boolean[] males;
+        private boolean[] infected;
+
+        /**
+         * Create empty columns.
+         */
+        public Columns()
+        {
+            cells = new int[INITIAL_CAPACITY];
+            ages = new int[INITIAL_CAPACITY];
+            foodLevels = new int[INITIAL_CAPACITY];
+            males = new boolean[INITIAL_CAPACITY];
+            infected = new boolean[INITIAL_CAPACITY];
+        }
+
+        /**
+         * Append a healthy animal, growing the columns if they are full.
+         * @return The new animal's index.
+         */
+        public int add(int cell, boolean male, int age, int foodLevel)
+        {
+            if(size == cells.length) {
+                int capacity = size * 2;
+                cells = Arrays.copyOf(cells, capacity);
+                ages = Arrays.copyOf(ages, capacity);
+                foodLevels = Arrays.copyOf(foodLevels, capacity);
+                males = Arrays.copyOf(males, capacity);
+                infected = Arrays.copyOf(infected, capacity);
+            }
+            cells[size] = cell;
+            males[size] = male;
+            ages[size] = age;
+            foodLevels[size] = foodLevel;
+            infected[size] = false;
+            return size++;
+        }
+
+        /**
+         * Copy the animal at one index over another.
+         */
+        public void copy(int from, int to)
+        {
+            cells[to] = cells[from];
+            ages[to] = ages[from];
+            foodLevels[to] = foodLevels[from];
+            males[to] = males[from];
+            infected[to] = infected[from];
+        }
+    }
+}
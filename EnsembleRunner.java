@@ -0,0 +1,370 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+/**
+ * Runs many independent, headless simulations at once, such as the same
+ * scenario with hundreds of different seeds. The runs are shared out on
+ * a work-stealing pool, so a sweep keeps every core busy however long
+ * each run takes.
+ *
+ * Every run has its own simulator, field and random number generator.
+ * The generator is bound to the thread doing the run, so nothing is
+ * shared between runs, and a run with a given seed gives exactly the
+ * same result as a single simulation started after
+ * Randomizer.setSeed with that seed. Each run's result is passed on as
+ * soon as it finishes.
+ *
+ * Run it from the command line to sweep a range of seeds, e.g.
+ *     java EnsembleRunner 100 1000 130x200
+ * for 100 runs of up to 1000 steps on a 130x200 field. It prints a line
+ * for each run as it finishes, then the mean and spread of the final
+ * population of each species. A fourth argument names a properties file
+ * of SimulationParameters to run with instead of the defaults.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class EnsembleRunner
+{
+    // The defaults for the command line.
+    private static final int DEFAULT_RUNS = 16;
+    private static final int DEFAULT_STEPS = 500;
+    private static final String DEFAULT_SIZE = "130x200";
+
+    // The threads the runs are shared between.
+    private ForkJoinPool pool;
+
+    /**
+     * Create a runner using every available processor.
+     */
+    public EnsembleRunner()
+    {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a runner using the given number of threads.
+     * @param threads The number of simulations to run at once.
+     */
+    public EnsembleRunner(int threads)
+    {
+        pool = new ForkJoinPool(threads);
+    }
+
+    /**
+     * Run a number of simulations, passing on each result as its run
+     * finishes. Results come in the order the runs finish, but are never
+     * passed on two at a time, so the consumer need not be thread-safe.
+     * @param runs The simulations to run.
+     * @param results Receives the result of each run.
+     */
+    public void run(List<Run> runs, Consumer<Result> results)
+    {
+        List<ForkJoinTask<?>> tasks = new ArrayList<>();
+        for(int i = 0; i < runs.size(); i++) {
+            Run run = runs.get(i);
+            int index = i;
+            tasks.add(ForkJoinTask.adapt(() -> {
+                Result result = simulate(index, run);
+                synchronized(results) {
+                    results.accept(result);
+                }
+            }));
+        }
+        pool.submit(() -> ForkJoinTask.invokeAll(tasks)).join();
+    }
+
+    /**
+     * Stop the threads. The runner cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Carry out a single run on the calling thread.
+     * @param index The number of the run.
+     * @param run The run to carry out.
+     * @return Its result.
+     */
+    private static Result simulate(int index, Run run)
+    {
+        long start = System.nanoTime();
+        SeededRandom previous = Randomizer.bind(Randomizer.newGenerator(run.getSeed()));
+        try {
+            Simulator simulator = new Simulator(run.getDepth(), run.getWidth(), false, run.getParameters());
+            FieldRecorder recorder = new FieldRecorder();
+            simulator.addObserver(recorder);
+            simulator.simulate(run.getSteps());
+            return new Result(index, run, recorder.step, recorder.day, recorder.field.getStats(),
+                              System.nanoTime() - start);
+        }
+        finally {
+            Randomizer.bind(previous);
+        }
+    }
+
+    /**
+     * Sweep a range of seeds, printing each run's final population as it
+     * finishes, and then a summary of all of them.
+     * @param args The number of runs, the most steps per run, the field
+     *             size (depth x width) and a parameters file, all optional.
+     * @throws IOException If the parameters file cannot be read.
+     */
+    public static void main(String[] args) throws IOException
+    {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_STEPS;
+        String[] size = (args.length > 2 ? args[2] : DEFAULT_SIZE).split("x");
+        int depth = Integer.parseInt(size[0].trim());
+        int width = Integer.parseInt(size[1].trim());
+        SimulationParameters parameters = args.length > 3 ? SimulationParameters.load(args[3])
+                                                          : SimulationParameters.DEFAULTS;
+
+        List<Run> runs = new ArrayList<>();
+        for(int i = 0; i < count; i++) {
+            runs.add(new Run(Randomizer.getSeed() + i, depth, width, steps, parameters));
+        }
+        double[] sums = new double[Species.COUNT];
+        double[] squares = new double[Species.COUNT];
+        EnsembleRunner runner = new EnsembleRunner();
+        long start = System.nanoTime();
+        runner.run(runs, result -> {
+            System.out.println(result);
+            for(int species = 0; species < Species.COUNT; species++) {
+                double value = result.getCount(species);
+                sums[species] += value;
+                squares[species] += value * value;
+            }
+        });
+        runner.shutdown();
+        System.out.printf("%d runs in %.1f s%n", count, (System.nanoTime() - start) / 1e9);
+        for(int species = 0; species < Species.COUNT; species++) {
+            double mean = sums[species] / count;
+            double spread = Math.sqrt(Math.max(0, squares[species] / count - mean * mean));
+            System.out.printf("%-10s mean %10.1f  sd %10.1f%n", Species.getName(species), mean, spread);
+        }
+    }
+
+    /**
+     * Remembers the field and time of the last completed step of a run.
+     */
+    private static class FieldRecorder implements StepObserver
+    {
+        private int step;
+        private int day;
+        private Field field;
+
+        /**
+         * Remember the state after a step.
+         */
+        public void stepCompleted(int step, int day, Field field)
+        {
+            this.step = step;
+            this.day = day;
+            this.field = field;
+        }
+    }
+
+    /**
+     * The description of a single simulation in an ensemble.
+     */
+    public static class Run
+    {
+        // The seed of the run's random number generator.
+        private final long seed;
+        // The size of the field.
+        private final int depth, width;
+        // The most steps to run for; the run stops early if it is no longer viable.
+        private final int steps;
+        // The parameters of the simulation.
+        private final SimulationParameters parameters;
+
+        /**
+         * Describe a run with the default parameters.
+         * @param seed The seed of the run's random number generator.
+         * @param depth The depth of the field.
+         * @param width The width of the field.
+         * @param steps The most steps to run for.
+         */
+        public Run(long seed, int depth, int width, int steps)
+        {
+            this(seed, depth, width, steps, SimulationParameters.DEFAULTS);
+        }
+
+        /**
+         * Describe a run, such as one point of a parameter sweep.
+         * @param seed The seed of the run's random number generator.
+         * @param depth The depth of the field.
+         * @param width The width of the field.
+         * @param steps The most steps to run for.
+         * @param parameters The parameters of the simulation.
+         */
+        public Run(long seed, int depth, int width, int steps, SimulationParameters parameters)
+        {
+            this.seed = seed;
+            this.depth = depth;
+            this.width = width;
+            this.steps = steps;
+            this.parameters = parameters;
+        }
+
+        /**
+         * @return The seed of the run's random number generator.
+         */
+        public long getSeed()
+        {
+            return seed;
+        }
+
+        /**
+         * @return The depth of the field.
+         */
+        public int getDepth()
+        {
+            return depth;
+        }
+
+        /**
+         * @return The width of the field.
+         */
+        public int getWidth()
+        {
+            return width;
+        }
+
+        /**
+         * @return The most steps to run for.
+         */
+        public int getSteps()
+        {
+            return steps;
+        }
+
+        /**
+         * @return The parameters of the simulation.
+         */
+        public SimulationParameters getParameters()
+        {
+            return parameters;
+        }
+    }
+
+    /**
+     * The outcome of a single simulation in an ensemble.
+     */
+    public static class Result
+    {
+        // The number of the run, in the order the runs were given.
+        private final int index;
+        // The run this is the result of.
+        private final Run run;
+        // The step and day the run stopped at.
+        private final int step, day;
+        // The final number of animals, and of infected animals, of each species.
+        private final int[] counts, infected;
+        // How long the run took, in nanoseconds.
+        private final long nanos;
+
+        /**
+         * Record the outcome of a run.
+         * @param index The number of the run.
+         * @param run The run.
+         * @param step The step it stopped at.
+         * @param day The day it stopped on.
+         * @param stats The statistics of its field at the end.
+         * @param nanos How long it took, in nanoseconds.
+         */
+        public Result(int index, Run run, int step, int day, FieldStats stats, long nanos)
+        {
+            this.index = index;
+            this.run = run;
+            this.step = step;
+            this.day = day;
+            this.nanos = nanos;
+            counts = new int[Species.COUNT];
+            infected = new int[Species.COUNT];
+            for(int species = 0; species < Species.COUNT; species++) {
+                counts[species] = stats.getCount(species);
+                infected[species] = stats.getInfectedCount(species);
+            }
+        }
+
+        /**
+         * @return The number of the run, in the order the runs were given.
+         */
+        public int getIndex()
+        {
+            return index;
+        }
+
+        /**
+         * @return The run this is the result of.
+         */
+        public Run getRun()
+        {
+            return run;
+        }
+
+        /**
+         * @return The step the run stopped at.
+         */
+        public int getStep()
+        {
+            return step;
+        }
+
+        /**
+         * @return The day the run stopped on.
+         */
+        public int getDay()
+        {
+            return day;
+        }
+
+        /**
+         * @param species A species number.
+         * @return The number of animals of the species at the end.
+         */
+        public int getCount(int species)
+        {
+            return counts[species];
+        }
+
+        /**
+         * @param species A species number.
+         * @return The number of infected animals of the species at the end.
+         */
+        public int getInfectedCount(int species)
+        {
+            return infected[species];
+        }
+
+        /**
+         * @return How long the run took, in nanoseconds.
+         */
+        public long getNanos()
+        {
+            return nanos;
+        }
+
+        /**
+         * @return A one-line summary of the result.
+         */
+        public String toString()
+        {
+            StringBuilder buffer = new StringBuilder();
+            buffer.append("run ").append(index).append(" seed ").append(run.getSeed());
+            buffer.append(" step ").append(step).append(" day ").append(day);
+            for(int species = 0; species < Species.COUNT; species++) {
+                buffer.append(' ').append(Species.getName(species)).append(": ").append(counts[species]);
+            }
+            buffer.append(String.format(" (%.2f s)", nanos / 1e9));
+            return buffer.toString();
+        }
+    }
+}
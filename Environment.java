@@ -0,0 +1,168 @@
+/**
+ * The conditions the animals act under during one step: the time of
+ * day, the weather, and the probabilities that follow from them, such
+ * as how readily disease spreads and krill grow.
+ *
+ * An environment is built once at the start of each step, after the
+ * weather has changed, and handed to every animal as it acts. It never
+ * changes afterwards, so animals acting on several threads at once can
+ * all read it safely, and none of them has to look at the field's clock
+ * or weather, or work out the probabilities, for itself.
+ *
+ * It also says whether prey rest through the step without acting, so
+ * that whatever steps the animals can pass over them.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public final class Environment
+{
+    // The kinds of weather, named as Weather.getCurrentWeatherString names them.
+    public static final String NORMAL = "Normal";
+    public static final String RAIN = "Rain";
+    public static final String DROUGHT = "Drought";
+    // The number of steps, or hours, in a day.
+    public static final int STEPS_IN_DAY = 24;
+    // The first and last hours of daylight.
+    public static final int DAWN = 6;
+    public static final int DUSK = 20;
+
+    // The step the environment is for.
+    private final int step;
+    // The day the step falls on.
+    private final int day;
+    // Whether it is day rather than night.
+    private final boolean isDay;
+    // One of the kinds of weather above.
+    private final String weather;
+    // The chance of disease passing from an animal to a neighbour.
+    private final double diseaseSpreadProbability;
+    // The chance of krill growing in any one cell.
+    private final double krillGrowthProbability;
+    // Whether prey rest through the step rather than acting.
+    private final boolean preyResting;
+
+    /**
+     * Work out the environment for a step.
+     * @param step The step.
+     * @param day The day the step falls on.
+     * @param isDay Whether it is day rather than night.
+     * @param weather The weather, already updated for the step.
+     * @param parameters The parameters of the simulation.
+     * @param preyResting Whether prey rest through the step rather than act.
+     */
+    public Environment(int step, int day, boolean isDay, Weather weather,
+                       SimulationParameters parameters, boolean preyResting)
+    {
+        this.step = step;
+        this.day = day;
+        this.isDay = isDay;
+        this.preyResting = preyResting;
+        if(weather.getIsRaining()) {
+            this.weather = RAIN;
+            diseaseSpreadProbability = parameters.getRainDiseaseSpreadProbability();
+            krillGrowthProbability = parameters.getRainKrillGrowthProbability();
+        }
+        else if(weather.getIsDrought()) {
+            this.weather = DROUGHT;
+            diseaseSpreadProbability = parameters.getDiseaseSpreadProbability();
+            krillGrowthProbability = parameters.getDroughtKrillGrowthProbability();
+        }
+        else {
+            this.weather = NORMAL;
+            diseaseSpreadProbability = parameters.getDiseaseSpreadProbability();
+            krillGrowthProbability = parameters.getKrillGrowthProbability();
+        }
+    }
+
+    /**
+     * Return whether an hour falls in the day rather than the night.
+     * @param hour The hour, counted from midnight on the first day.
+     * @return true if it is daytime.
+     */
+    public static boolean isDaytime(int hour)
+    {
+        int time = hour % STEPS_IN_DAY;
+        return time >= DAWN && time <= DUSK;
+    }
+
+    /**
+     * @return The step the environment is for.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The day the step falls on.
+     */
+    public int getDay()
+    {
+        return day;
+    }
+
+    /**
+     * @return true if it is day, false if it is night.
+     */
+    public boolean isDay()
+    {
+        return isDay;
+    }
+
+    /**
+     * @return The weather: NORMAL, RAIN or DROUGHT.
+     */
+    public String getWeather()
+    {
+        return weather;
+    }
+
+    /**
+     * @return true if it is raining.
+     */
+    public boolean isRaining()
+    {
+        return weather == RAIN;
+    }
+
+    /**
+     * @return true if there is a drought.
+     */
+    public boolean isDrought()
+    {
+        return weather == DROUGHT;
+    }
+
+    /**
+     * @return The chance of disease passing from an infected animal to
+     *         each uninfected neighbour.
+     */
+    public double getDiseaseSpreadProbability()
+    {
+        return diseaseSpreadProbability;
+    }
+
+    /**
+     * @return The chance of krill growing in any one cell.
+     */
+    public double getKrillGrowthProbability()
+    {
+        return krillGrowthProbability;
+    }
+
+    /**
+     * @return true if prey rest through the step, so need not act.
+     */
+    public boolean isPreyResting()
+    {
+        return preyResting;
+    }
+
+    /**
+     * @return A short description, e.g. "step 12, day 1, Rain".
+     */
+    public String toString()
+    {
+        return "step " + step + ", day " + day + (isDay ? "" : " (night)") + ", " + weather;
+    }
+}
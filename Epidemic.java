@@ -0,0 +1,193 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Spreads disease through a field once per step, in a phase of its own
+ * before the animals act, instead of as each infected animal acts.
+ *
+ * Only the infection frontier is visited: the field keeps a bitset of
+ * the cells holding infected animals, and each of those looks at its
+ * neighbours. An uninfected animal next to m infected ones has escaped
+ * all m of them with probability (1 - p)^m, so it is infected with a
+ * single draw against a table of those chances, worked out once per
+ * step for the weather. The newly infected animals are then all infected
+ * together, so infection spreads at most one cell per step however the
+ * animals happen to be ordered.
+ *
+ * Animals also catch the disease without contact. Rather than draw for
+ * every animal, the phase jumps straight from the cell of one that
+ * catches it to the next with a GeometricSkip.
+ *
+ * As when each animal spread the disease itself, predators do not
+ * spread it at night, when they only rest, nor catch it then without
+ * contact; but resting predators still catch it from infected prey.
+ *
+ * Prey that rest through the night without acting can still die of the
+ * disease. Those deaths are drawn together too, jumping from one dying
+ * prey to the next among the infected cells.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class Epidemic
+{
+    // The most infected neighbours an animal can have.
+    private static final int MAX_EXPOSURE = Field.MAX_ADJACENT;
+
+    // The number of infected neighbours of each cell, zero except during a step.
+    private byte[] exposure;
+    // The cells with at least one infected neighbour, in the order first found.
+    private int[] exposed;
+    // The chance of an animal being infected by each number of infected neighbours.
+    private final double[] catchProbability;
+    // The spread probability the table was last worked out for.
+    private double tableProbability;
+    // Jumps between the animals that catch the disease without contact.
+    private GeometricSkip spontaneousSkip;
+    // Jumps between the resting prey that die of the disease.
+    private GeometricSkip deathSkip;
+
+    /**
+     * Create the epidemic phase of a simulation.
+     */
+    public Epidemic()
+    {
+        exposure = new byte[0];
+        exposed = new int[64];
+        catchProbability = new double[MAX_EXPOSURE + 1];
+        tableProbability = -1;
+    }
+
+    /**
+     * Spread the disease for one step: infect the uninfected neighbours
+     * of infected animals, then let some animals catch it by themselves.
+     * @param field The field the animals are in.
+     * @param environment The conditions of the step.
+     */
+    public void spread(Field field, Environment environment)
+    {
+        Random rand = Randomizer.getRandom();
+        boolean night = !environment.isDay();
+        updateTable(environment.getDiseaseSpreadProbability());
+        int count = findExposed(field, night);
+
+        // Draw for every exposed cell before infecting any, so that no
+        // animal infected this step passes the disease on this step.
+        int infected = 0;
+        for(int i = 0; i < count; i++) {
+            int cell = exposed[i];
+            if(rand.nextDouble() <= catchProbability[exposure[cell]]) {
+                exposed[infected++] = cell;
+            }
+            exposure[cell] = 0;
+        }
+        for(int i = 0; i < infected; i++) {
+            ((Animal) field.getObjectAt(exposed[i])).infectAnimal();
+        }
+
+        catchSpontaneously(field, night, rand);
+    }
+
+    /**
+     * Count the infected neighbours of every uninfected animal next to
+     * an infected one.
+     * @param field The field the animals are in.
+     * @param night Whether it is night, when predators do not spread the disease.
+     * @return The number of exposed cells, listed at the start of exposed.
+     */
+    private int findExposed(Field field, boolean night)
+    {
+        int cells = field.getDepth() * field.getWidth();
+        if(exposure.length != cells) {
+            exposure = new byte[cells];
+        }
+        int count = 0;
+        for(int cell = field.nextInfectedCell(0); cell >= 0; cell = field.nextInfectedCell(cell + 1)) {
+            if(night && field.getObjectAt(cell) instanceof Predator) {
+                continue;
+            }
+            for(int offset : field.getAdjacentOffsets(cell)) {
+                int next = cell + offset;
+                Object occupant = field.getObjectAt(next);
+                if(occupant == null || field.isInfectedAt(next)) {
+                    continue;
+                }
+                if(exposure[next]++ == 0) {
+                    if(count == exposed.length) {
+                        exposed = Arrays.copyOf(exposed, 2 * count);
+                    }
+                    exposed[count++] = next;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Let each uninfected animal catch the disease without contact with
+     * the simulation's infection probability, jumping between the cells
+     * whose animals do. Going by cell rather than through the list of
+     * animals, which may still hold some that have died, makes the result
+     * depend only on the field.
+     * @param field The field the animals are in.
+     * @param night Whether it is night, when predators cannot catch it.
+     * @param rand The random number generator to draw from.
+     */
+    private void catchSpontaneously(Field field, boolean night, Random rand)
+    {
+        double probability = field.getParameters().getInfectedProbability();
+        if(spontaneousSkip == null || spontaneousSkip.getProbability() != probability) {
+            spontaneousSkip = new GeometricSkip(probability);
+        }
+        long cells = (long) field.getDepth() * field.getWidth();
+        for(long cell = spontaneousSkip.next(rand); cell < cells;
+            cell += 1L + spontaneousSkip.next(rand)) {
+            Object occupant = field.getObjectAt((int) cell);
+            if(occupant instanceof Animal && !(night && occupant instanceof Predator)) {
+                Animal animal = (Animal) occupant;
+                if(!animal.isInfected()) {
+                    animal.infectAnimal();
+                }
+            }
+        }
+    }
+
+    /**
+     * Let each infected prey animal die of the disease with the
+     * simulation's disease death probability, as it would on its own
+     * turn. Used on steps when the prey rest rather than act.
+     * @param field The field the animals are in.
+     */
+    public void killRestingPrey(Field field)
+    {
+        Random rand = Randomizer.getRandom();
+        double probability = field.getParameters().getDiseaseDeathProbability();
+        if(deathSkip == null || deathSkip.getProbability() != probability) {
+            deathSkip = new GeometricSkip(probability);
+        }
+        // The number of infected prey to pass over before the next one dies.
+        int untilDeath = deathSkip.next(rand);
+        for(int cell = field.nextInfectedCell(0); cell >= 0; cell = field.nextInfectedCell(cell + 1)) {
+            Object occupant = field.getObjectAt(cell);
+            if(occupant instanceof Prey && untilDeath-- == 0) {
+                ((Prey) occupant).setDead();
+                untilDeath = deathSkip.next(rand);
+            }
+        }
+    }
+
+    /**
+     * Work out the chance of an animal being infected by each number of
+     * infected neighbours, unless it is already known for this probability.
+     * @param probability The chance of one infected neighbour passing the disease on.
+     */
+    private void updateTable(double probability)
+    {
+        if(probability == tableProbability) {
+            return;
+        }
+        for(int m = 0; m <= MAX_EXPOSURE; m++) {
+            catchProbability[m] = 1 - Math.pow(1 - probability, m);
+        }
+        tableProbability = probability;
+    }
+}
@@ -1,45 +1,78 @@
-import java.util.Collections;
-import java.util.Iterator;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 /**
  * Represent a rectangular grid of field positions.
  * Each position is able to store a single animal and a number of Krill in it.
  * Also keeps track of day and night and weather conditions affect the growth
  * of krill
+ *
+ * Besides the animals themselves, the field keeps a bitset of the cells
+ * holding each species, one of the cells holding males and one of the
+ * cells holding infected animals. Asking
+ * whether a neighbour holds, say, a female fox then takes a few reads of
+ * whole words of bits, rather than loading and testing every neighbour.
  * 
  * @author Mohammad Talal Hassan and Luke Kensik
  */
 public class Field
 {
-    // Maximum number of krill in a postion
-    private static final int MAX_KRILL = 40;
-    // The rate at which the number of krill increases per step
-    private static final int GROWTH_RATE = 2;
-    // The number of krill in every position in the beginning
-    private static final int STARTING_NUM_OF_KRILL = 20;
-    // Probability of krill growing
-    private static final double GROWTH_PROBABILTY = 0.80;
-    
-    private static final double RAIN_GROWTH_PROBABILTY = 0.99;
-    
-    private static final double DROUGHT_GROWTH_PROBABILTY = 0.10;
+    // The most cells that can be adjacent to any one cell.
+    public static final int MAX_ADJACENT = Adjacency.MAX_ADJACENT;
+    // The side of the square tiles the field keeps animal counts for.
+    public static final int TILE_SIZE = 16;
+    // The sexes that findAdjacentAnimal can look for.
+    public static final int ANY_SEX = 0, MALE = 1, FEMALE = 2;
+    // Sets and clears bits of the occupancy bitsets atomically.
+    private static final VarHandle BITS = MethodHandles.arrayElementVarHandle(long[].class);
         
     // A random number generator for providing random locations.
     private static final Random rand = Randomizer.getRandom();
     
     // The depth and width of the field.
     private int depth, width;
-    // Storage for the animals.
-    private Object[][] field;
+    // Turn division by the width into a multiplication and a shift:
+    // row = (cell * rowMultiplier) >>> rowShift for every cell.
+    private long rowMultiplier;
+    private int rowShift;
+    // Storage for the animals, one entry per cell in row-major order.
+    private Object[] field;
+    // The neighbours of each cell.
+    private Adjacency adjacency;
     // Storage for the number of krill in a position
-    private int[][] krill;
+    private KrillLayer krill;
     // Keeps track of day and night
     private boolean isDay;
     
     private Weather weather;
+    // Counts of the animals of each species in the field.
+    private FieldStats stats;
+    // The parameters of the simulation the field belongs to.
+    private SimulationParameters parameters;
+    // The number of rows and columns of tiles.
+    private int tileRows, tileCols;
+    // The number of animals of each species in each tile, indexed by
+    // tile * Species.COUNT + species. Atomic, as animals in neighbouring
+    // tiles may move at once when the field is stepped in parallel.
+    private AtomicIntegerArray tileCounts;
+    // For each species, a bit for each cell holding one of its animals.
+    // Cell c is bit c + width + 1, so that the rows above and below
+    // any cell can be read without going out of bounds.
+    private long[][] speciesBits;
+    // A bit for each cell holding a male, numbered the same way.
+    private long[] maleBits;
+    // A bit for each cell holding an infected animal, numbered the same way.
+    private long[] infectedBits;
+    // Keeps the animals' ages and food levels, and when they die of them.
+    private LifecycleScheduler lifecycle;
+    // Whether disease spreads in a phase of its own each step, rather
+    // than as each animal acts.
+    private boolean batchedEpidemic;
 
     /**
      * Represent a field of the given dimensions.
@@ -48,12 +81,61 @@ public class Field
      */
     public Field(int depth, int width)
     {
+        this(depth, width, SimulationParameters.DEFAULTS);
+    }
+    
+    /**
+     * Represent a field of the given dimensions, whose krill, weather
+     * and animals follow the given parameters. Each cell is known by its
+     * index in row-major order, so the field may hold up to
+     * Integer.MAX_VALUE cells in any shape.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param parameters The parameters of the simulation.
+     * @throws IllegalArgumentException If the field has no cells or too many.
+     */
+    public Field(int depth, int width, SimulationParameters parameters)
+    {
+        this(depth, width, parameters, CellStorage.HEAP);
+    }
+    
+    /**
+     * Represent a field of the given dimensions, keeping the krill of
+     * every cell in the given storage, such as off the heap. The animals
+     * are objects, so they are always kept on the heap.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     * @param parameters The parameters of the simulation.
+     * @param storage Where to keep the krill of each cell.
+     * @throws IllegalArgumentException If the field has no cells or too many.
+     */
+    public Field(int depth, int width, SimulationParameters parameters, CellStorage storage)
+    {
+        if(depth <= 0 || width <= 0 || (long) depth * width > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Cannot make a field of " + depth + "x" + width);
+        }
+        // With the shift 31 bits more than the bits in the width, rounding
+        // the multiplier up is exact for every non-negative int.
+        rowShift = 31 + (32 - Integer.numberOfLeadingZeros(width - 1));
+        rowMultiplier = ((1L << rowShift) + width - 1) / width;
         this.depth = depth;
         this.width = width;
-        field = new Object[depth][width];
-        krill = new int[depth][width];
-        weather = new Weather();
-        populateKrill(depth, width);
+        this.parameters = parameters;
+        field = new Object[depth * width];
+        tileRows = (depth + TILE_SIZE - 1) / TILE_SIZE;
+        tileCols = (width + TILE_SIZE - 1) / TILE_SIZE;
+        tileCounts = new AtomicIntegerArray(tileRows * tileCols * Species.COUNT);
+        // Room for the padding rows, and one more word for reads that cross a word.
+        int words = (int) (((long) depth * width + 2L * width + 2 + 63) / 64) + 1;
+        speciesBits = new long[Species.COUNT][words];
+        maleBits = new long[words];
+        infectedBits = new long[words];
+        batchedEpidemic = true;
+        lifecycle = new LifecycleScheduler();
+        adjacency = new Adjacency(depth, width);
+        krill = new KrillLayer(depth * width, parameters, storage);
+        weather = new Weather(parameters);
+        stats = new FieldStats();
         isDay= true;
     }
     
@@ -94,29 +176,38 @@ public class Field
     }
     
     /**
-     * Empty the field.
+     * Return the parameters of the simulation the field belongs to.
+     * @return The simulation's parameters.
      */
-    public void clear()
+    public SimulationParameters getParameters()
     {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                field[row][col] = null;
-            }
-        }
+        return parameters;
     }
     
     /**
-     * Assigns a random number of krill to each position in the field
-     * @param depth of field 
-     * @param width of field 
+     * Return the counts of the animals of each species in the field.
+     * @return The field's statistics.
      */
-    private void populateKrill(int depth, int width)
+    public FieldStats getStats()
     {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                krill[row][col] = STARTING_NUM_OF_KRILL;
-            }
+        return stats;
+    }
+    
+    /**
+     * Empty the field.
+     */
+    public void clear()
+    {
+        Arrays.fill(field, null);
+        for(int i = 0; i < tileCounts.length(); i++) {
+            tileCounts.set(i, 0);
         }
+        for(long[] bits : speciesBits) {
+            Arrays.fill(bits, 0);
+        }
+        Arrays.fill(maleBits, 0);
+        Arrays.fill(infectedBits, 0);
+        stats.reset();
     }
     
     /**
@@ -124,24 +215,16 @@ public class Field
      */
     public void resetKrill()
     {
-        populateKrill(getDepth(), getWidth());
+        krill.reset();
     }
     
     /**
-     * Checks the current weather and then grows krill in each position
-     * based on the current weather
+     * Grows krill in each position based on the current weather
+     * @param environment The conditions of the current step.
      */
-    public void growKrill()
+    public void growKrill(Environment environment)
     {
-        if (!weather.checkWeather()) {
-            growKrill(GROWTH_PROBABILTY);
-        }
-        else if (weather.getIsRaining()) {
-            growKrill(RAIN_GROWTH_PROBABILTY);
-        }
-        else if (weather.getIsDrought()) {
-            growKrill(DROUGHT_GROWTH_PROBABILTY);
-        }
+        krill.grow(environment);
     }
     
     /**
@@ -151,16 +234,36 @@ public class Field
      */
     public void growKrill(double probabilty)
     {
-        for(int row = 0; row < depth; row++) {
-            for(int col = 0; col < width; col++) {
-                if (rand.nextDouble() <= probabilty && krill[row][col] < MAX_KRILL){
-                    krill[row][col] += GROWTH_RATE;                    
-                }
-                if (krill[row][col] > MAX_KRILL) {
-                        krill[row][col] = MAX_KRILL;
-                    }
-            }
-        }
+        krill.grow(probabilty);
+    }
+    
+    /**
+     * Choose whether the krill grow lazily, catching up with the growth
+     * they have missed only when a position is looked at, rather than
+     * every position growing every step.
+     * @param lazy true for lazy growth.
+     */
+    public void setLazyKrill(boolean lazy)
+    {
+        krill.setLazy(lazy);
+    }
+    
+    /**
+     * Choose whether eager krill growth uses the bulk kernel or the
+     * cell-by-cell loop of earlier versions (see KrillLayer.setBulkGrowth).
+     * @param bulk true for the bulk kernel.
+     */
+    public void setBulkGrowth(boolean bulk)
+    {
+        krill.setBulkGrowth(bulk);
+    }
+    
+    /**
+     * @return true if eager krill growth uses the bulk kernel.
+     */
+    public boolean isBulkGrowth()
+    {
+        return krill.isBulkGrowth();
     }
     
     /**
@@ -173,29 +276,18 @@ public class Field
      */
     public int eatKrill(int appetite, Location location)
     {
-        int krill = getKrillAt(location);
-        eatenKrill(appetite, location);
-        if (krill > 0) {
-            if (appetite > krill){
-                eatenKrill(krill, location);
-                return krill;
-            }
-            else {
-                eatenKrill(appetite, location);
-                return appetite;
-            }
-        }
-        return 0;        
+        return eatKrill(appetite, getCell(location));
     }
     
     /**
-     * Removes the amount of krill that was eaten from specified location
-     * @param amount of eaten krill as int
-     * @param location of krill as location
+     * Eat up to the given number of krill from a cell.
+     * @param appetite The number of krill wanted.
+     * @param cell The index of the cell.
+     * @return The number of krill eaten.
      */
-    private void eatenKrill(int amount, Location location)
+    public int eatKrill(int appetite, int cell)
     {
-        krill[location.getRow()][location.getCol()] -= amount;
+        return krill.eat(appetite, cell);
     }
 
     /**
@@ -204,7 +296,16 @@ public class Field
      */
     public void clear(Location location)
     {
-        field[location.getRow()][location.getCol()] = null;
+        setCell(getCell(location), null);
+    }
+    
+    /**
+     * Clear the given cell.
+     * @param cell The index of the cell to clear.
+     */
+    public void clear(int cell)
+    {
+        setCell(cell, null);
     }
     
     /**
@@ -217,7 +318,7 @@ public class Field
      */
     public void place(Object animal, int row, int col)
     {
-        place(animal, new Location(row, col));
+        setCell(getCell(row, col), animal);
     }
     
     /**
@@ -229,7 +330,259 @@ public class Field
      */
     public void place(Object animal, Location location)
     {
-        field[location.getRow()][location.getCol()] = animal;
+        setCell(getCell(location), animal);
+    }
+    
+    /**
+     * Place an animal in the given cell.
+     * If there is already an animal in the cell it will be lost.
+     * @param animal The animal to be placed.
+     * @param cell The index of the cell.
+     */
+    public void place(Object animal, int cell)
+    {
+        setCell(cell, animal);
+    }
+
+    /**
+     * Put an animal, or nothing, in a cell, keeping the counts of its
+     * tile and the occupancy bitsets up to date.
+     * @param cell The index of the cell.
+     * @param animal The animal, or null to empty the cell.
+     */
+    private void setCell(int cell, Object animal)
+    {
+        Object previous = field[cell];
+        if(previous == animal) {
+            return;
+        }
+        int tile = getTile(cell) * Species.COUNT;
+        long bit = bitOf(cell);
+        int word = (int) (bit >>> 6);
+        long mask = 1L << bit;
+        if(previous instanceof Animal) {
+            Animal leaving = (Animal) previous;
+            tileCounts.decrementAndGet(tile + leaving.getSpecies());
+            BITS.getAndBitwiseAnd(speciesBits[leaving.getSpecies()], word, ~mask);
+            if(leaving.isMale()) {
+                BITS.getAndBitwiseAnd(maleBits, word, ~mask);
+            }
+            if(leaving.isInfected()) {
+                BITS.getAndBitwiseAnd(infectedBits, word, ~mask);
+            }
+        }
+        if(animal instanceof Animal) {
+            Animal arriving = (Animal) animal;
+            tileCounts.incrementAndGet(tile + arriving.getSpecies());
+            BITS.getAndBitwiseOr(speciesBits[arriving.getSpecies()], word, mask);
+            if(arriving.isMale()) {
+                BITS.getAndBitwiseOr(maleBits, word, mask);
+            }
+            if(arriving.isInfected()) {
+                BITS.getAndBitwiseOr(infectedBits, word, mask);
+            }
+        }
+        field[cell] = animal;
+    }
+
+    /**
+     * Look at the cells adjacent to a cell in a random order, the same
+     * order adjacentCells would give them in, and return the first that
+     * holds an animal of one of the given species and of the given sex.
+     * The neighbours are found from the occupancy bitsets, so only the
+     * animal returned need be looked at.
+     * @param cell The cell whose neighbours to look at.
+     * @param speciesMask The species wanted, a bit for each (see Species.bit).
+     * @param sex ANY_SEX, MALE or FEMALE.
+     * @return The index of the first such cell, or -1 if there is none.
+     */
+    public int findAdjacentAnimal(int cell, int speciesMask, int sex)
+    {
+        int window = 0;
+        for(int row = 0; row < 3; row++) {
+            // The bits of the three cells of this row of the window.
+            long first = (long) cell + row * width;
+            int found = 0;
+            for(int species = 0; species < Species.COUNT; species++) {
+                if((speciesMask & (1 << species)) != 0) {
+                    found |= readThreeBits(speciesBits[species], first);
+                }
+            }
+            if(sex == MALE) {
+                found &= readThreeBits(maleBits, first);
+            }
+            else if(sex == FEMALE) {
+                found &= ~readThreeBits(maleBits, first);
+            }
+            window |= found << (3 * row);
+        }
+        int[] offsets = adjacency.getOffsets(cell);
+        int position = Adjacency.firstInShuffle(offsets.length, adjacency.getNeighbourBits(cell, window), rand);
+        return position < 0 ? -1 : cell + offsets[position];
+    }
+
+    /**
+     * Record that the animal in a cell has caught or lost the disease.
+     * Called by the animal, which keeps the field's bitsets up to date.
+     * @param cell The index of the animal's cell.
+     * @param infected Whether it is now infected.
+     */
+    void updateInfected(int cell, boolean infected)
+    {
+        long bit = bitOf(cell);
+        if(infected) {
+            BITS.getAndBitwiseOr(infectedBits, (int) (bit >>> 6), 1L << bit);
+        }
+        else {
+            BITS.getAndBitwiseAnd(infectedBits, (int) (bit >>> 6), ~(1L << bit));
+        }
+    }
+
+    /**
+     * Return whether a cell holds an infected animal.
+     * @param cell The index of the cell.
+     * @return true if it does.
+     */
+    public boolean isInfectedAt(int cell)
+    {
+        long bit = bitOf(cell);
+        return (infectedBits[(int) (bit >>> 6)] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Find the next cell holding an infected animal, skipping whole words
+     * of healthy cells at a time.
+     * @param from The index of the first cell to look at.
+     * @return The index of the next infected cell at or after it, or -1
+     *         if there is none.
+     */
+    public int nextInfectedCell(int from)
+    {
+        int cells = depth * width;
+        if(from >= cells) {
+            return -1;
+        }
+        long bit = bitOf(from);
+        int index = (int) (bit >>> 6);
+        long word = infectedBits[index] & (-1L << bit);
+        while(word == 0) {
+            if(++index == infectedBits.length) {
+                return -1;
+            }
+            word = infectedBits[index];
+        }
+        long cell = index * 64L + Long.numberOfTrailingZeros(word) - width - 1;
+        return cell < cells ? (int) cell : -1;
+    }
+
+    /**
+     * Return the index offsets of the cells adjacent to a cell, in a
+     * fixed order. The array is shared and must not be modified.
+     * @param cell The index of the cell.
+     * @return The offsets of its neighbours.
+     */
+    public int[] getAdjacentOffsets(int cell)
+    {
+        return adjacency.getOffsets(cell);
+    }
+
+    /**
+     * Return the scheduler that keeps the clock the animals' ages and
+     * food levels are measured by, and kills them when they run out.
+     * @return The field's lifecycle scheduler.
+     */
+    public LifecycleScheduler getLifecycle()
+    {
+        return lifecycle;
+    }
+
+    /**
+     * Choose whether disease spreads in a phase of its own at the start
+     * of each step (see Epidemic), or as each infected animal acts, as
+     * in earlier versions. The two give the same chances of infection,
+     * but only the second repeats the runs of earlier versions exactly.
+     * @param batched true for a phase of its own.
+     */
+    public void setBatchedEpidemic(boolean batched)
+    {
+        batchedEpidemic = batched;
+    }
+
+    /**
+     * @return true if disease spreads in a phase of its own each step.
+     */
+    public boolean isBatchedEpidemic()
+    {
+        return batchedEpidemic;
+    }
+
+    /**
+     * Return the bit of the occupancy bitsets that stands for a cell.
+     * Near the largest fields this is past the largest int, so it is
+     * worked out as a long.
+     * @param cell The index of the cell.
+     * @return The index of its bit.
+     */
+    private long bitOf(int cell)
+    {
+        return (long) cell + width + 1;
+    }
+
+    /**
+     * Read three consecutive bits of a bitset.
+     * @param bits The bitset.
+     * @param first The first of the bits.
+     * @return The three bits, the first lowest.
+     */
+    private static int readThreeBits(long[] bits, long first)
+    {
+        int shift = (int) first & 63;
+        int index = (int) (first >>> 6);
+        long word = bits[index] >>> shift;
+        if(shift > 61) {
+            word |= bits[index + 1] << (64 - shift);
+        }
+        return (int) word & 7;
+    }
+
+    /**
+     * Return the tile a cell is in.
+     * @param cell The index of the cell.
+     * @return The index of its tile, in row-major order.
+     */
+    private int getTile(int cell)
+    {
+        return (getRow(cell) / TILE_SIZE) * tileCols + getCol(cell) / TILE_SIZE;
+    }
+
+    /**
+     * @return The number of rows of tiles, each TILE_SIZE cells high.
+     */
+    public int getTileRows()
+    {
+        return tileRows;
+    }
+
+    /**
+     * @return The number of columns of tiles, each TILE_SIZE cells wide.
+     */
+    public int getTileCols()
+    {
+        return tileCols;
+    }
+
+    /**
+     * Return the number of animals of a species in a tile. Together the
+     * tiles give a coarse picture of a large field without looking at
+     * every cell.
+     * @param tileRow The row of the tile.
+     * @param tileCol The column of the tile.
+     * @param species The species number.
+     * @return The number of animals of the species in the tile.
+     */
+    public int getTileCount(int tileRow, int tileCol, int species)
+    {
+        return tileCounts.get((tileRow * tileCols + tileCol) * Species.COUNT + species);
     }
     
     /**
@@ -250,7 +603,17 @@ public class Field
      */
     public Object getObjectAt(int row, int col)
     {
-        return field[row][col];
+        return field[getCell(row, col)];
+    }
+    
+    /**
+     * Return the animal in the given cell, if any.
+     * @param cell The index of the cell.
+     * @return The animal in the cell, or null if there is none.
+     */
+    public Object getObjectAt(int cell)
+    {
+        return field[cell];
     }
     
     /**
@@ -260,7 +623,7 @@ public class Field
      */
     public int getKrillAt(Location location)
     {
-        return krill[location.getRow()][location.getCol()];
+        return krill.get(getCell(location));
     }
     
     /**
@@ -271,7 +634,7 @@ public class Field
      */
     public int getKrillAt(int row, int col)
     {
-        return krill[row][col];
+        return krill.get(getCell(row, col));
     }
     
     /**
@@ -284,8 +647,7 @@ public class Field
      */
     public Location randomAdjacentLocation(Location location)
     {
-        List<Location> adjacent = adjacentLocations(location);
-        return adjacent.get(0);
+        return getLocation(randomAdjacentCell(getCell(location)));
     }
     
     /**
@@ -295,14 +657,9 @@ public class Field
      */
     public List<Location> getFreeAdjacentLocations(Location location)
     {
-        List<Location> free = new LinkedList<>();
-        List<Location> adjacent = adjacentLocations(location);
-        for(Location next : adjacent) {
-            if(getObjectAt(next) == null) {
-                free.add(next);
-            }
-        }
-        return free;
+        int[] cells = new int[MAX_ADJACENT];
+        int count = freeAdjacentCells(getCell(location), cells);
+        return toLocations(cells, count);
     }
     
     /**
@@ -315,10 +672,9 @@ public class Field
      */
     public Location freeAdjacentLocation(Location location)
     {
-        // The available free ones.
-        List<Location> free = getFreeAdjacentLocations(location);
-        if(free.size() > 0) {
-            return free.get(0);
+        int cell = freeAdjacentCell(getCell(location));
+        if(cell >= 0) {
+            return getLocation(cell);
         }
         else {
             return null;
@@ -335,30 +691,151 @@ public class Field
     public List<Location> adjacentLocations(Location location)
     {
         assert location != null : "Null location passed to adjacentLocations";
-        // The list of locations to be returned.
-        List<Location> locations = new LinkedList<>();
+        int[] cells = new int[MAX_ADJACENT];
+        int count = 0;
         if(location != null) {
-            int row = location.getRow();
-            int col = location.getCol();
-            for(int roffset = -1; roffset <= 1; roffset++) {
-                int nextRow = row + roffset;
-                if(nextRow >= 0 && nextRow < depth) {
-                    for(int coffset = -1; coffset <= 1; coffset++) {
-                        int nextCol = col + coffset;
-                        // Exclude invalid locations and the original location.
-                        if(nextCol >= 0 && nextCol < width && (roffset != 0 || coffset != 0)) {
-                            locations.add(new Location(nextRow, nextCol));
-                        }
-                    }
-                }
-            }
-            
-            // Shuffle the list. Several other methods rely on the list
-            // being in a random order.
-            Collections.shuffle(locations, rand);
+            count = adjacentCells(getCell(location), cells);
+        }
+        return toLocations(cells, count);
+    }
+    
+    /**
+     * Turn the first count cells of an array into a list of locations.
+     * @param cells The cell indices.
+     * @param count How many of them to use.
+     * @return A list of the matching locations, in the same order.
+     */
+    private List<Location> toLocations(int[] cells, int count)
+    {
+        List<Location> locations = new LinkedList<>();
+        for(int i = 0; i < count; i++) {
+            locations.add(getLocation(cells[i]));
         }
         return locations;
     }
+    
+    /**
+     * Fill the given array with the cells adjacent to a cell, in a
+     * random order. Several other methods rely on the order being
+     * random. Nothing is allocated, so this is the method to use
+     * in code that runs every step.
+     * @param cell The cell from which to generate adjacencies.
+     * @param buffer Receives the adjacent cells. It must have room
+     *               for at least MAX_ADJACENT entries.
+     * @return The number of adjacent cells written to the buffer.
+     */
+    public int adjacentCells(int cell, int[] buffer)
+    {
+        return adjacency.adjacentCells(cell, buffer, rand);
+    }
+    
+    /**
+     * Fill the given array with the free cells adjacent to a cell,
+     * in a random order.
+     * @param cell The cell from which to generate adjacencies.
+     * @param buffer Receives the free cells. It must have room
+     *               for at least MAX_ADJACENT entries.
+     * @return The number of free cells written to the buffer.
+     */
+    public int freeAdjacentCells(int cell, int[] buffer)
+    {
+        // Shuffle all the neighbours and keep the free ones in order,
+        // drawing the random numbers earlier versions drew.
+        int adjacent = adjacency.adjacentCells(cell, buffer, rand);
+        int count = 0;
+        for(int i = 0; i < adjacent; i++) {
+            if(field[buffer[i]] == null) {
+                buffer[count++] = buffer[i];
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * Pick a free cell adjacent to the given one at random.
+     * @param cell The cell from which to generate an adjacency.
+     * @return The index of a free adjacent cell, or -1 if there is none.
+     */
+    public int freeAdjacentCell(int cell)
+    {
+        int[] offsets = adjacency.getOffsets(cell);
+        int free = 0;
+        for(int i = 0; i < offsets.length; i++) {
+            if(field[cell + offsets[i]] == null) {
+                free |= 1 << i;
+            }
+        }
+        // The first free cell in the order adjacentCells would give.
+        int position = Adjacency.firstInShuffle(offsets.length, free, rand);
+        return position < 0 ? -1 : cell + offsets[position];
+    }
+    
+    /**
+     * Pick a cell adjacent to the given one at random.
+     * @param cell The cell from which to generate an adjacency.
+     * @return The index of an adjacent cell, or the cell itself if
+     *         the field has only one cell.
+     */
+    public int randomAdjacentCell(int cell)
+    {
+        int[] offsets = adjacency.getOffsets(cell);
+        if(offsets.length == 0) {
+            return cell;
+        }
+        // The first cell in the order adjacentCells would give.
+        return cell + offsets[Adjacency.firstInShuffle(offsets.length, (1 << offsets.length) - 1, rand)];
+    }
+    
+    /**
+     * Return the index of the cell at the given location.
+     * @param location A location within the field.
+     * @return The row-major index of that cell.
+     */
+    public int getCell(Location location)
+    {
+        return location.getRow() * width + location.getCol();
+    }
+    
+    /**
+     * Return the location of the given cell.
+     * @param cell The row-major index of a cell.
+     * @return The location of that cell.
+     */
+    public Location getLocation(int cell)
+    {
+        return new Location(getRow(cell), getCol(cell));
+    }
+    
+    /**
+     * Return the index of the cell at the given row and column.
+     * @param row The row.
+     * @param col The column.
+     * @return The row-major index of that cell.
+     */
+    public int getCell(int row, int col)
+    {
+        return row * width + col;
+    }
+    
+    /**
+     * Return the row of a cell, without dividing.
+     * @param cell The row-major index of a cell.
+     * @return The row of the cell.
+     */
+    public int getRow(int cell)
+    {
+        return (int) ((cell * rowMultiplier) >>> rowShift);
+    }
+    
+    /**
+     * Return the column of a cell.
+     * @param cell The row-major index of a cell.
+     * @return The column of the cell.
+     */
+    public int getCol(int cell)
+    {
+        return cell - getRow(cell) * width;
+    }
 
     /**
      * Return the depth of the field.
@@ -377,4 +854,31 @@ public class Field
     {
         return width;
     }
+    
+    /**
+     * Copy the field's size, time of day, weather and krill into a snapshot.
+     * The animals are saved by the simulator.
+     * @param state The snapshot to fill in.
+     */
+    void saveTo(SimulationState state)
+    {
+        state.depth = depth;
+        state.width = width;
+        state.isDay = isDay;
+        weather.saveTo(state);
+        krill.saveTo(state);
+    }
+    
+    /**
+     * Empty the field and restore its time of day, weather and krill
+     * from a snapshot of a field of the same size.
+     * @param state The snapshot to restore.
+     */
+    void loadFrom(SimulationState state)
+    {
+        clear();
+        isDay = state.isDay;
+        weather.loadFrom(state);
+        krill.loadFrom(state);
+    }
 }
@@ -1,44 +1,42 @@
-import java.awt.Color;
-import java.util.HashMap;
-
 /**
  * This class collects and provides some statistical data on the state 
- * of a field. It is flexible: it will create and maintain a counter 
- * for any class of object that is found within the field.
+ * of a field. It keeps a counter for each species, which animals update
+ * as they are placed in the field and as they die, so the counts are
+ * always up to date without scanning the field. A second counter for
+ * each species holds how many of its animals are infected. The counters
+ * may be updated by several threads at once.
  * 
  * @author David J. Barnes and Michael Kölling
  * @version 2016.02.29
  */
 public class FieldStats
 {
-    // Counters for each type of entity (fox, rabbit, etc.) in the simulation.
-    private HashMap<Class, Counter> counters;
-    // Whether the counters are currently up to date.
-    private boolean countsValid;
+    // Counters for each species in the simulation, indexed by species number.
+    private Counter[] counters;
+    // Counters of the infected animals of each species.
+    private Counter[] infected;
 
     /**
      * Construct a FieldStats object.
      */
     public FieldStats()
     {
-        // Set up a collection for counters for each type of animal that
-        // we might find
-        counters = new HashMap<>();
-        countsValid = true;
+        counters = new Counter[Species.COUNT];
+        infected = new Counter[Species.COUNT];
+        for(int species = 0; species < Species.COUNT; species++) {
+            counters[species] = new Counter(Species.getName(species));
+            infected[species] = new Counter(Species.getName(species) + " infected");
+        }
     }
 
     /**
      * Get details of what is in the field.
      * @return A string describing what is in the field.
      */
-    public String getPopulationDetails(Field field)
+    public String getPopulationDetails()
     {
-        StringBuffer buffer = new StringBuffer();
-        if(!countsValid) {
-            generateCounts(field);
-        }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
+        StringBuilder buffer = new StringBuilder();
+        for(Counter info : counters) {
             buffer.append(info.getName());
             buffer.append(": ");
             buffer.append(info.getCount());
@@ -48,40 +46,72 @@ public class FieldStats
     }
     
     /**
-     * Invalidate the current set of statistics; reset all 
-     * counts to zero.
+     * Reset all counts to zero.
      */
     public void reset()
     {
-        countsValid = false;
-        for(Class key : counters.keySet()) {
-            Counter count = counters.get(key);
+        for(Counter count : counters) {
+            count.reset();
+        }
+        for(Counter count : infected) {
             count.reset();
         }
     }
 
     /**
-     * Increment the count for one class of animal.
-     * @param animalClass The class of animal to increment.
+     * Record that an animal has been placed in the field.
+     * @param species The animal's species number.
      */
-    public void incrementCount(Class animalClass)
+    public void incrementCount(int species)
     {
-        Counter count = counters.get(animalClass);
-        if(count == null) {
-            // We do not have a counter for this species yet.
-            // Create one.
-            count = new Counter(animalClass.getName());
-            counters.put(animalClass, count);
-        }
-        count.increment();
+        counters[species].increment();
+    }
+
+    /**
+     * Record that an animal has died.
+     * @param species The animal's species number.
+     */
+    public void decrementCount(int species)
+    {
+        counters[species].decrement();
+    }
+
+    /**
+     * Return how many animals of a species are alive.
+     * @param species The species number.
+     * @return The number alive.
+     */
+    public int getCount(int species)
+    {
+        return counters[species].getCount();
+    }
+
+    /**
+     * Record that an animal in the field has become infected.
+     * @param species The animal's species number.
+     */
+    public void incrementInfected(int species)
+    {
+        infected[species].increment();
+    }
+
+    /**
+     * Record that an infected animal has recovered or died.
+     * @param species The animal's species number.
+     */
+    public void decrementInfected(int species)
+    {
+        infected[species].decrement();
     }
 
     /**
-     * Indicate that an animal count has been completed.
+     * Return how many animals of a species are alive and infected.
+     * @param species The species number.
+     * @return The number infected.
      */
-    public void countFinished()
+    public int getInfectedCount(int species)
     {
-        countsValid = true;
+        return infected[species].getCount();
     }
 
     /**
@@ -89,40 +119,15 @@ public class FieldStats
      * I.e., should it continue to run.
      * @return true If there is more than one species alive.
      */
-    public boolean isViable(Field field)
+    public boolean isViable()
     {
         // How many counts are non-zero.
         int nonZero = 0;
-        if(!countsValid) {
-            generateCounts(field);
-        }
-        for(Class key : counters.keySet()) {
-            Counter info = counters.get(key);
+        for(Counter info : counters) {
             if(info.getCount() > 0) {
                 nonZero++;
             }
         }
         return nonZero > 1;
     }
-    
-    /**
-     * Generate counts of the number of foxes and rabbits.
-     * These are not kept up to date as foxes and rabbits
-     * are placed in the field, but only when a request
-     * is made for the information.
-     * @param field The field to generate the stats for.
-     */
-    private void generateCounts(Field field)
-    {
-        reset();
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    incrementCount(animal.getClass());
-                }
-            }
-        }
-        countsValid = true;
-    }
 }
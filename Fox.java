@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -12,24 +11,25 @@ import java.util.Random;
  */
 public class Fox extends Predator
 {
-    // Characteristics shared by all foxes (class variables).
+    // The default characteristics of foxes, used unless the simulation's
+    // parameters give others (see SimulationParameters).
     
     // The age at which a fox can start to breed.
-    private static final int BREEDING_AGE = 12;
+    static final int BREEDING_AGE = 12;
     // The age to which a fox can live.
-    private static final int MAX_AGE = 300;
+    static final int MAX_AGE = 300;
     // The likelihood of a fox breeding.
-    private static final double BREEDING_PROBABILITY = 0.21;
+    static final double BREEDING_PROBABILITY = 0.21;
     // Likelihood that a fox may move at night
-    private static final double NIGHT_MOVING_PROB = 0.50;
+    static final double NIGHT_MOVING_PROB = 0.50;
     // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 3;
+    static final int MAX_LITTER_SIZE = 3;
     // The food value of a single rabbit.
-    private static final int RABBIT_FOOD_VALUE = 18;
+    static final int RABBIT_FOOD_VALUE = 18;
     // Chance they catch the disease from prey
-    private static final double DISEASED_PREY_INFECTION = 0.60;
+    static final double DISEASED_PREY_INFECTION = 0.60;
     // Maximum amount of food a fox can eat
-    private static final int HUNGER_CAP = 60;
+    static final int HUNGER_CAP = 60;
     // A shared random number generator to control breeding.
     private static final Random rand = Randomizer.getRandom();
     
@@ -40,26 +40,37 @@ public class Fox extends Predator
      * 
      * @param randomAge If true, the fox will have random age and hunger level.
      * @param field The field currently occupied.
+     * @param cell The index of the cell within the field.
+     */
+    public Fox(boolean randomAge, Field field, int cell)
+    {
+        super(randomAge, false, field, cell);
+    }
+    
+    /**
+     * Create a fox at the given location.
+     * 
+     * @param randomAge If true, the fox will have a random age.
+     * @param field The field currently occupied.
      * @param location The location within the field.
      */
     public Fox(boolean randomAge, Field field, Location location)
     {
-        super(randomAge, false, field, location, MAX_AGE ,HUNGER_CAP);
+        this(randomAge, field, field.getCell(location));
     }
     
     /**
      * This is what the fox does most of the time: it hunts for
      * rabbits. In the process, it might breed, die of hunger,
      * die of old age, or die of disease
-     * @param field The field currently occupied.
+     * @param environment The conditions of the current step.
      * @param newFoxes A list to return newly born foxes.
      */
-    public void act(List<Animal> newFoxes)
+    public void act(Environment environment, List<Animal> newFoxes)
     {
-        incrementAge(MAX_AGE);
-        incrementHunger();
-        if(isAlive() && getField().getIsDay()) {
-            animalIsDiseased();
+        dieIfDue();
+        if(isAlive() && environment.isDay()) {
+            animalIsDiseased(environment);
             if(deathByDisease()){
                 return;
             }
@@ -67,7 +78,7 @@ public class Fox extends Predator
             
             hunt();
         }
-        else if (isAlive() && !getField().getIsDay()){ 
+        else if (isAlive() && !environment.isDay()){ 
             actNight();
         }
     }
@@ -78,10 +89,10 @@ public class Fox extends Predator
      */
     private void actNight()
     {
-        if (getFoodLevel() < (3/4) * RABBIT_FOOD_VALUE){
+        if (getFoodLevel() < getTraits().getNightHuntingFoodLevel()){
             hunt();
         }
-        else if (rand.nextDouble() <= NIGHT_MOVING_PROB) {
+        else if (rand.nextDouble() <= getTraits().getNightMovingProbability()) {
             hunt();
         }
         return;
@@ -92,27 +103,18 @@ public class Fox extends Predator
      * Only the first live rabbit is eaten.
      * There is also a chance that if they ate a diseased animal, they 
      * could catch the disease as well
-     * @return Where food was found, or null if it wasn't.
+     * @return The cell where food was found, or -1 if it wasn't.
      */
-    protected Location findFood()
+    protected int findFood()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Rabbit) {
-                Rabbit rabbit = (Rabbit) animal;
-                if(rabbit.isAlive()) { 
-                    rabbit.setDead();
-                    diseaseFromInfectedAnimal(rabbit);
-                    eat(RABBIT_FOOD_VALUE, HUNGER_CAP);
-                    return where;
-                }
-            }
+        int where = findAdjacentAnimal(Species.bit(Species.RABBIT), Field.ANY_SEX);
+        if(where >= 0) {
+            Rabbit rabbit = (Rabbit) getField().getObjectAt(where);
+            rabbit.setDead();
+            diseaseFromInfectedAnimal(rabbit);
+            eat(getTraits().getFoodValue(Species.RABBIT));
         }
-        return null;
+        return where;
     }
            
     /**
@@ -122,20 +124,11 @@ public class Fox extends Predator
      */
     private void findMate(List<Animal> newFoxes)
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Fox) {
-                Fox fox = (Fox) animal;
-                if (fox.isMale() != this.isMale()){
-                    giveBirth(newFoxes);
-                    matingDisease(fox);
-                    return;
-                }
-            }
+        int where = findAdjacentAnimal(Species.bit(Species.FOX), getOppositeSex());
+        if(where >= 0) {
+            Fox fox = (Fox) getField().getObjectAt(where);
+            giveBirth(newFoxes);
+            matingDisease(fox);
         }
     }
     
@@ -149,11 +142,10 @@ public class Fox extends Predator
         // New foxes are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int free = findFreeAdjacentCells();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Fox young = new Fox(false, field, loc);
+        for(int b = 0; b < births && b < free; b++) {
+            Fox young = new Fox(false, field, getAdjacentCell(b));
             newFoxes.add(young);
         }
     }
@@ -166,8 +158,8 @@ public class Fox extends Predator
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        if(canBreed() && rand.nextDouble() <= getTraits().getBreedingProbability()) {
+            births = rand.nextInt(getTraits().getMaxLitterSize()) + 1;
         }
         return births;
     }
@@ -177,6 +169,15 @@ public class Fox extends Predator
      */
     private boolean canBreed()
     {
-        return getAge() >= BREEDING_AGE;
+        return getAge() >= getTraits().getBreedingAge();
+    }
+    
+    /**
+     * Return the number identifying the fox species.
+     * @return Species.FOX
+     */
+    protected int getSpecies()
+    {
+        return Species.FOX;
     }
 }
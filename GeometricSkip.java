@@ -0,0 +1,75 @@
+import java.util.Random;
+
+/**
+ * Samples a run of independent trials that each succeed with the same,
+ * small probability, by jumping straight from one success to the next.
+ * The number of failures before a success follows a geometric
+ * distribution, so it can be drawn with a single random number instead
+ * of one per trial: floor(ln U / ln(1 - p)) for U uniform in (0, 1].
+ * A sweep over n trials then needs about n * p random numbers, not n.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class GeometricSkip
+{
+    // The probability of each trial succeeding.
+    private final double probability;
+    // The natural logarithm of the probability of a trial failing.
+    private final double logFailure;
+
+    /**
+     * Create a sampler for trials with the given chance of success.
+     * @param probability The chance of each trial succeeding.
+     */
+    public GeometricSkip(double probability)
+    {
+        this.probability = probability;
+        logFailure = Math.log1p(-probability);
+    }
+
+    /**
+     * @return The chance of each trial succeeding.
+     */
+    public double getProbability()
+    {
+        return probability;
+    }
+
+    /**
+     * Draw the number of failures before the next success.
+     * @param rand The random number generator to draw from.
+     * @return The number of trials to skip, or Integer.MAX_VALUE if
+     *         there is no success within reach.
+     */
+    public int next(Random rand)
+    {
+        if(probability >= 1) {
+            return 0;
+        }
+        if(probability <= 0) {
+            return Integer.MAX_VALUE;
+        }
+        double skip = Math.floor(Math.log(1 - rand.nextDouble()) / logFailure);
+        return skip < Integer.MAX_VALUE ? (int) skip : Integer.MAX_VALUE;
+    }
+
+    /**
+     * Count the successes in a number of trials, stopping early once
+     * enough have been found.
+     * @param trials The number of trials.
+     * @param wanted The most successes of interest.
+     * @param rand The random number generator to draw from.
+     * @return The number of successes, at most wanted.
+     */
+    public int successes(int trials, int wanted, Random rand)
+    {
+        int found = 0;
+        // The index of the next success.
+        long trial = next(rand);
+        while(trial < trials && found < wanted) {
+            found++;
+            trial += 1L + next(rand);
+        }
+        return found;
+    }
+}
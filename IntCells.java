@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * One int for every cell of a grid, such as the krill in each cell,
+ * kept wherever a CellStorage says: in an ordinary array on the heap, in
+ * direct memory outside the heap, or in a file mapped into memory.
+ *
+ * Off the heap the garbage collector never scans or moves the values,
+ * and a mapped file lets a grid be larger than memory, with the
+ * operating system paging in only the parts in use. A buffer can hold
+ * at most 2GB, so the values are split into chunks of CHUNK_SIZE.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public abstract class IntCells
+{
+    // The number of values in each off-heap chunk, a power of two.
+    static final int CHUNK_BITS = 27;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+
+    // The number of values.
+    private final int length;
+
+    /**
+     * @param length The number of values.
+     */
+    protected IntCells(int length)
+    {
+        this.length = length;
+    }
+
+    /**
+     * Create values in an array on the heap, all zero.
+     * @param length The number of values.
+     * @return The values.
+     */
+    public static IntCells onHeap(int length)
+    {
+        return new HeapCells(length);
+    }
+
+    /**
+     * Create values in direct memory outside the heap, all zero. The
+     * amount of direct memory is limited by -XX:MaxDirectMemorySize.
+     * @param length The number of values.
+     * @return The values.
+     */
+    public static IntCells offHeap(int length)
+    {
+        IntBuffer[] chunks = new IntBuffer[chunkCount(length)];
+        for(int i = 0; i < chunks.length; i++) {
+            int size = Math.min(CHUNK_SIZE, length - i * CHUNK_SIZE);
+            chunks[i] = ByteBuffer.allocateDirect(4 * size).order(ByteOrder.nativeOrder()).asIntBuffer();
+        }
+        return new BufferCells(length, chunks);
+    }
+
+    /**
+     * Create values in a new file mapped into memory, all zero. The file
+     * is made in the given directory and deleted again as soon as it is
+     * mapped, so it never outlives the values: its disk space is given
+     * back once they are no longer used. It starts sparse, so only the
+     * parts written take up disk space.
+     * @param length The number of values.
+     * @param directory The directory to make the file in.
+     * @return The values.
+     * @throws UncheckedIOException If the file cannot be made or mapped.
+     */
+    public static IntCells mapped(int length, Path directory)
+    {
+        try {
+            Path file = Files.createTempFile(directory, "cells", ".bin");
+            IntBuffer[] chunks = new IntBuffer[chunkCount(length)];
+            // The mappings stay valid after the channel is closed and the
+            // file deleted.
+            try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ,
+                                                       StandardOpenOption.WRITE,
+                                                       StandardOpenOption.DELETE_ON_CLOSE)) {
+                for(int i = 0; i < chunks.length; i++) {
+                    int size = Math.min(CHUNK_SIZE, length - i * CHUNK_SIZE);
+                    chunks[i] = channel.map(FileChannel.MapMode.READ_WRITE, 4L * i * CHUNK_SIZE, 4L * size)
+                                       .order(ByteOrder.nativeOrder()).asIntBuffer();
+                }
+            }
+            return new BufferCells(length, chunks);
+        }
+        catch(IOException e) {
+            throw new UncheckedIOException("Cannot map cells in " + directory, e);
+        }
+    }
+
+    /**
+     * @param length A number of values.
+     * @return The number of chunks needed to hold them, at least one.
+     */
+    private static int chunkCount(int length)
+    {
+        return Math.max(1, (int) ((length + (long) CHUNK_SIZE - 1) >>> CHUNK_BITS));
+    }
+
+    /**
+     * @return The number of values.
+     */
+    public int length()
+    {
+        return length;
+    }
+
+    /**
+     * @param index The index of a cell.
+     * @return The cell's value.
+     */
+    public abstract int get(int index);
+
+    /**
+     * @param index The index of a cell.
+     * @param value The cell's new value.
+     */
+    public abstract void set(int index, int value);
+
+    /**
+     * Set every cell to the same value.
+     * @param value The value.
+     */
+    public void fill(int value)
+    {
+        for(int i = 0; i < length; i++) {
+            set(i, value);
+        }
+    }
+
+    /**
+     * Add an amount to each of a run of cells, capping them at a maximum.
+     * @param start The first cell of the run.
+     * @param amounts The amount to add to each cell of the run.
+     * @param count The number of cells in the run.
+     * @param max The most any cell may hold.
+     */
+    public void addCapped(int start, int[] amounts, int count, int max)
+    {
+        for(int j = 0; j < count; j++) {
+            set(start + j, Math.min(get(start + j) + amounts[j], max));
+        }
+    }
+
+    /**
+     * Copy every value into an array.
+     * @param values The array, with room for every value.
+     */
+    public void copyTo(int[] values)
+    {
+        for(int i = 0; i < length; i++) {
+            values[i] = get(i);
+        }
+    }
+
+    /**
+     * Copy every value from an array.
+     * @param values The array, holding a value for every cell.
+     */
+    public void copyFrom(int[] values)
+    {
+        for(int i = 0; i < length; i++) {
+            set(i, values[i]);
+        }
+    }
+
+    /**
+     * Values in an ordinary array. Its loops are written against the
+     * array so that the JIT compiler can vectorise them.
+     */
+    private static class HeapCells extends IntCells
+    {
+        private final int[] values;
+
+        /**
+         * @param length The number of values.
+         */
+        public HeapCells(int length)
+        {
+            super(length);
+            values = new int[length];
+        }
+
+        public int get(int index)
+        {
+            return values[index];
+        }
+
+        public void set(int index, int value)
+        {
+            values[index] = value;
+        }
+
+        public void fill(int value)
+        {
+            Arrays.fill(values, value);
+        }
+
+        public void addCapped(int start, int[] amounts, int count, int max)
+        {
+            for(int j = 0; j < count; j++) {
+                values[start + j] = Math.min(values[start + j] + amounts[j], max);
+            }
+        }
+
+        public void copyTo(int[] copy)
+        {
+            System.arraycopy(values, 0, copy, 0, values.length);
+        }
+
+        public void copyFrom(int[] copy)
+        {
+            System.arraycopy(copy, 0, values, 0, values.length);
+        }
+    }
+
+    /**
+     * Values in chunks of direct or mapped buffers, in the machine's
+     * own byte order.
+     */
+    private static class BufferCells extends IntCells
+    {
+        private final IntBuffer[] chunks;
+
+        /**
+         * @param length The number of values.
+         * @param chunks The buffers holding them, CHUNK_SIZE values to each but the last.
+         */
+        public BufferCells(int length, IntBuffer[] chunks)
+        {
+            super(length);
+            this.chunks = chunks;
+        }
+
+        public int get(int index)
+        {
+            return chunks[index >>> CHUNK_BITS].get(index & (CHUNK_SIZE - 1));
+        }
+
+        public void set(int index, int value)
+        {
+            chunks[index >>> CHUNK_BITS].put(index & (CHUNK_SIZE - 1), value);
+        }
+
+        public void copyTo(int[] values)
+        {
+            for(int i = 0; i < chunks.length; i++) {
+                chunks[i].get(0, values, i * CHUNK_SIZE, chunks[i].capacity());
+            }
+        }
+
+        public void copyFrom(int[] values)
+        {
+            for(int i = 0; i < chunks.length; i++) {
+                chunks[i].put(0, values, i * CHUNK_SIZE, chunks[i].capacity());
+            }
+        }
+    }
+}
@@ -12,23 +12,24 @@ import java.util.Random;
  */
 public class Jellyfish extends Animal
 {
-    // Characteristics shared by all jellyfish (class variables).
+    // The default characteristics of jellyfish, used unless the simulation's
+    // parameters give others (see SimulationParameters).
 
     // The age at which a jellyfish can start to breed.
-    private static final int BREEDING_AGE = 1000;
+    static final int BREEDING_AGE = 1000;
     // The age to which a jellyfish can live.
-    private static final int MAX_AGE = 10000000;
+    static final int MAX_AGE = 10000000;
     // The likelihood of a jellyfish breeding.
-    private static final double BREEDING_PROBABILITY = 0.001; 
+    static final double BREEDING_PROBABILITY = 0.001; 
     // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 1;
+    static final int MAX_LITTER_SIZE = 1;
     // A shared random number generator to control breeding.
     private static final Random rand = Randomizer.getRandom();
     
     // Individual characteristics (instance fields).
     
-    // The jellyfish's age.
-    private int age;
+    // The step on which the jellyfish's age was zero.
+    private int bornAt;
 
     /**
      * Create a new jellyfish. A jellyfish may be created with age
@@ -36,35 +37,49 @@ public class Jellyfish extends Animal
      * 
      * @param randomAge If true, the jellyfish will have a random age.
      * @param field The field currently occupied.
-     * @param location The location within the field.
+     * @param cell The index of the cell within the field.
      */
-    public Jellyfish(boolean randomAge, Field field, Location location)
+    public Jellyfish(boolean randomAge, Field field, int cell)
     {
-        super(field, location);
-        age = 0;
+        super(field, cell);
+        int age = 0;
         if(randomAge) {
-            age = rand.nextInt(MAX_AGE);
+            age = rand.nextInt(getTraits().getMaxAge());
         }
+        bornAt = getLifecycle().getStep() - age;
+    }
+    
+    /**
+     * Create a jellyfish at the given location.
+     * 
+     * @param randomAge If true, the jellyfish will have a random age.
+     * @param field The field currently occupied.
+     * @param location The location within the field.
+     */
+    public Jellyfish(boolean randomAge, Field field, Location location)
+    {
+        this(randomAge, field, field.getCell(location));
     }
     
     /**
      * This is what the jellyfish does most of the time - it runs 
      * around. Sometimes it will breed or die of old age, or die of disease
+     * @param environment The conditions of the current step.
      * @param newJellyfish A list to return newly born jellyfish.
      */
-    public void act(List<Animal> newJellyfish)
+    public void act(Environment environment, List<Animal> newJellyfish)
     {
-        incrementAge();
+        dieIfDue();
         if(isAlive()) {
-            animalIsDiseased();
+            animalIsDiseased(environment);
             if(deathByDisease()){
                 return;
             }
             giveBirth(newJellyfish);            
             // Try to move into a free location.
-            Location newLocation = getField().freeAdjacentLocation(getLocation());
-            if(newLocation != null) {
-                setLocation(newLocation);
+            int newCell = getField().freeAdjacentCell(getCell());
+            if(newCell >= 0) {
+                setCell(newCell);
             }
             else {
                 // Overcrowding.
@@ -74,15 +89,13 @@ public class Jellyfish extends Animal
     }
 
     /**
-     * Increase the age.
-     * This could result in the jellyfish's death.
+     * Return the step the jellyfish dies of old age on. Jellyfish do not
+     * eat, so they never starve.
+     * @return The step after the jellyfish passes its maximum age.
      */
-    private void incrementAge()
+    protected int getDeathStep()
     {
-        age++;
-        if(age > MAX_AGE) {
-            setDead();
-        }
+        return bornAt + getTraits().getMaxAge() + 1;
     }
     
     /**
@@ -95,11 +108,10 @@ public class Jellyfish extends Animal
         // New jellyfish are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int free = findFreeAdjacentCells();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Jellyfish young = new Jellyfish(false, field, loc);
+        for(int b = 0; b < births && b < free; b++) {
+            Jellyfish young = new Jellyfish(false, field, getAdjacentCell(b));
             newJellyfish.add(young);
         }
     }
@@ -112,8 +124,8 @@ public class Jellyfish extends Animal
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        if(canBreed() && rand.nextDouble() <= getTraits().getBreedingProbability()) {
+            births = rand.nextInt(getTraits().getMaxLitterSize()) + 1;
         }
         return births;
     }
@@ -124,6 +136,44 @@ public class Jellyfish extends Animal
      */
     private boolean canBreed()
     {
-        return age >= BREEDING_AGE;
+        return getAge() >= getTraits().getBreedingAge();
+    }
+    
+    /**
+     * Return the number identifying the jellyfish species.
+     * @return Species.JELLYFISH
+     */
+    protected int getSpecies()
+    {
+        return Species.JELLYFISH;
+    }
+    
+    /**
+     * Return the age of the jellyfish.
+     * @return the age of the jellyfish
+     */
+    protected int getAge()
+    {
+        return getLifecycle().getStep() - bornAt;
+    }
+    
+    /**
+     * Jellyfish do not eat.
+     * @return 0
+     */
+    protected int getFoodLevel()
+    {
+        return 0;
+    }
+    
+    /**
+     * Set the age of the jellyfish. Jellyfish do not eat, so the
+     * food level is ignored.
+     * @param age the age of the jellyfish
+     * @param foodLevel ignored
+     */
+    protected void restoreCondition(int age, int foodLevel)
+    {
+        bornAt = getLifecycle().getStep() - age;
     }
 }
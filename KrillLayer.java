@@ -0,0 +1,455 @@
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * The krill living in a rectangular grid, stored as one count per cell
+ * in row-major order. Krill grow each step at a rate that depends on
+ * the weather, and are eaten by prey.
+ *
+ * Growth can be eager, drawing a random number for every cell every
+ * step, or lazy. A lazy layer only records the weather of each growth
+ * round, and a cell catches up with the rounds it has missed when it is
+ * next looked at. The number of successful growths in the missed rounds
+ * is sampled directly, so the krill follow the same distribution as
+ * with eager growth, but each step costs in proportion to the number of
+ * cells grazed rather than the size of the grid. So that the record
+ * does not grow with the length of the run, every MAX_HISTORY rounds all
+ * the cells are brought up to date and the record started again.
+ *
+ * Eager growth normally runs as a bulk kernel: the random draws for a
+ * block of cells are made first, two cells to a 64-bit number, and then
+ * the growth is added and clamped to the maximum without a branch, in a
+ * loop simple enough for the JIT compiler to turn into SIMD instructions.
+ * When growth is unlikely, as in a drought, the kernel instead jumps from
+ * each growing cell straight to the next with a GeometricSkip. The
+ * original cell-by-cell loop, with one draw per cell, is kept for
+ * reproducing earlier runs exactly.
+ *
+ * The count for each cell, and for a lazy layer the round it has
+ * caught up with, are kept wherever the CellStorage given says, so the
+ * krill of a very large grid can live off the heap or in a mapped file.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class KrillLayer
+{
+    // Maximum number of krill in a postion
+    static final int MAX_KRILL = 40;
+    // The rate at which the number of krill increases per step
+    static final int GROWTH_RATE = 2;
+    // The number of krill in every position in the beginning
+    static final int STARTING_NUM_OF_KRILL = 20;
+    // Probability of krill growing
+    static final double GROWTH_PROBABILTY = 0.80;
+    // Probability of krill growing when it is raining
+    static final double RAIN_GROWTH_PROBABILTY = 0.99;
+    // Probability of krill growing in a drought
+    static final double DROUGHT_GROWTH_PROBABILTY = 0.10;
+
+    private static final Random rand = Randomizer.getRandom();
+    // The most growth rounds a lazy layer records before catching every cell up.
+    private static final int MAX_HISTORY = 4096;
+    // The number of cells the bulk kernel draws random numbers for at a time.
+    private static final int BLOCK_SIZE = 1024;
+    // Growth probabilities up to this are sampled by skipping to the cells that grow.
+    private static final double SPARSE_PROBABILITY = 0.25;
+
+    // The most krill a cell can hold, the amount they grow by, and the amount at the start.
+    private final int maxKrill, growthRate, startingKrill;
+    // The chance of krill growing in normal weather, in rain and in a drought.
+    private final double growthProbability, rainGrowthProbability, droughtGrowthProbability;
+    // Skips from one cell growing in a drought to the next.
+    private final GeometricSkip droughtSkip;
+    // Where the values kept for every cell are stored.
+    private final CellStorage storage;
+    // The number of krill in each cell.
+    private IntCells krill;
+    // Whether growth is applied lazily.
+    private boolean lazy;
+    // Whether eager growth uses the bulk kernel rather than the cell-by-cell loop.
+    private boolean bulk;
+    // The growth drawn for each cell of a block by the bulk kernel.
+    private int[] growth;
+    // The number of growth rounds so far.
+    private int rounds;
+    // For a lazy layer, the number of rounds each cell has caught up with.
+    private IntCells grownTo;
+    // For a lazy layer, the number of rainy and drought rounds among the first n rounds.
+    private int[] rainyRounds, droughtRounds;
+
+    /**
+     * Create a layer of krill with the starting amount in every cell,
+     * growing as set by the default parameters.
+     * @param cells The number of cells in the grid.
+     */
+    public KrillLayer(int cells)
+    {
+        this(cells, SimulationParameters.DEFAULTS);
+    }
+
+    /**
+     * Create a layer of krill with the starting amount in every cell.
+     * @param cells The number of cells in the grid.
+     * @param parameters The parameters setting how the krill grow.
+     */
+    public KrillLayer(int cells, SimulationParameters parameters)
+    {
+        this(cells, parameters, CellStorage.HEAP);
+    }
+
+    /**
+     * Create a layer of krill with the starting amount in every cell,
+     * keeping the counts in the given storage.
+     * @param cells The number of cells in the grid.
+     * @param parameters The parameters setting how the krill grow.
+     * @param storage Where to keep the count for each cell.
+     */
+    public KrillLayer(int cells, SimulationParameters parameters, CellStorage storage)
+    {
+        this.storage = storage;
+        maxKrill = parameters.getMaxKrill();
+        growthRate = parameters.getKrillGrowthRate();
+        startingKrill = parameters.getStartingKrill();
+        growthProbability = parameters.getKrillGrowthProbability();
+        rainGrowthProbability = parameters.getRainKrillGrowthProbability();
+        droughtGrowthProbability = parameters.getDroughtKrillGrowthProbability();
+        droughtSkip = new GeometricSkip(droughtGrowthProbability);
+        krill = storage.allocate(cells);
+        bulk = true;
+        growth = new int[BLOCK_SIZE];
+        reset();
+    }
+
+    /**
+     * Put the starting number of krill back into every cell.
+     */
+    public void reset()
+    {
+        krill.fill(startingKrill);
+        rounds = 0;
+        if(lazy) {
+            grownTo.fill(0);
+        }
+    }
+
+    /**
+     * Choose between eager and lazy growth. Switching from lazy to
+     * eager brings every cell up to date.
+     * @param lazy true for lazy growth.
+     */
+    public void setLazy(boolean lazy)
+    {
+        if(lazy == this.lazy) {
+            return;
+        }
+        if(lazy) {
+            // Every cell is up to date, and only rounds from now on are recorded.
+            grownTo = storage.allocate(krill.length());
+            rainyRounds = new int[MAX_HISTORY + 1];
+            droughtRounds = new int[MAX_HISTORY + 1];
+            rounds = 0;
+        }
+        else {
+            catchUpAll();
+            grownTo = null;
+            rainyRounds = null;
+            droughtRounds = null;
+        }
+        this.lazy = lazy;
+    }
+
+    /**
+     * @return true if growth is applied lazily.
+     */
+    public boolean isLazy()
+    {
+        return lazy;
+    }
+
+    /**
+     * Choose how eager growth is applied. The bulk kernel is much faster,
+     * but uses the random numbers differently, so only the cell-by-cell
+     * loop repeats the runs of earlier versions.
+     * @param bulk true for the bulk kernel, false for the cell-by-cell loop.
+     */
+    public void setBulkGrowth(boolean bulk)
+    {
+        this.bulk = bulk;
+    }
+
+    /**
+     * @return true if eager growth uses the bulk kernel.
+     */
+    public boolean isBulkGrowth()
+    {
+        return bulk;
+    }
+
+    /**
+     * Grows krill in each cell with the probability the step's weather
+     * gives
+     * @param environment The conditions of the current step.
+     */
+    public void grow(Environment environment)
+    {
+        if (lazy) {
+            recordRound(environment);
+        }
+        else {
+            grow(environment.getKrillGrowthProbability());
+        }
+    }
+
+    /**
+     * Grows krill in each cell determined by the probabilty passed into
+     * the parameter
+     * @param probabilty The chance of krill growing in any one cell.
+     */
+    public void grow(double probabilty)
+    {
+        // A lazy layer only records rounds of weather, so bring it up to date first.
+        catchUpAll();
+        if(bulk && probabilty <= SPARSE_PROBABILITY) {
+            growSparse(probabilty);
+            return;
+        }
+        if(bulk) {
+            growBulk(probabilty);
+            return;
+        }
+        for(int cell = 0; cell < krill.length(); cell++) {
+            int count = krill.get(cell);
+            if (rand.nextDouble() <= probabilty && count < maxKrill){
+                count += growthRate;
+            }
+            if (count > maxKrill) {
+                count = maxKrill;
+            }
+            krill.set(cell, count);
+        }
+    }
+
+    /**
+     * Grow the krill in every cell with the given probability, a block
+     * of cells at a time. Each 64-bit random number gives two 32-bit
+     * numbers, and a cell grows when its number is below the probability
+     * scaled to 32 bits. Adding the growth and capping it at the maximum
+     * gives the same result as the cell-by-cell loop for any count.
+     * @param probabilty The chance of krill growing in any one cell.
+     */
+    private void growBulk(double probabilty)
+    {
+        long threshold = (long) Math.ceil(Math.min(Math.max(probabilty, 0), 1) * 0x1p32);
+        Random generator = Randomizer.current();
+        int cells = krill.length();
+        for(int start = 0; start < cells; start += BLOCK_SIZE) {
+            int length = Math.min(BLOCK_SIZE, cells - start);
+            // The draws: a difference below zero sets the top bit, meaning the cell grows.
+            int i = 0;
+            for(; i + 1 < length; i += 2) {
+                long bits = generator.nextLong();
+                growth[i] = (int) (((bits & 0xFFFFFFFFL) - threshold) >>> 63) * growthRate;
+                growth[i + 1] = (int) (((bits >>> 32) - threshold) >>> 63) * growthRate;
+            }
+            if(i < length) {
+                growth[i] = (int) (((generator.nextLong() >>> 32) - threshold) >>> 63) * growthRate;
+            }
+            // The growth, free of branches so that it can be vectorised.
+            krill.addCapped(start, growth, length, maxKrill);
+        }
+    }
+
+    /**
+     * Grow the krill with a small probability, visiting only the cells
+     * that grow.
+     * @param probabilty The chance of krill growing in any one cell.
+     */
+    private void growSparse(double probabilty)
+    {
+        GeometricSkip skip = probabilty == droughtGrowthProbability ? droughtSkip
+                                                                    : new GeometricSkip(probabilty);
+        Random generator = Randomizer.current();
+        for(long cell = skip.next(generator); cell < krill.length(); cell += 1L + skip.next(generator)) {
+            int index = (int) cell;
+            krill.set(index, Math.min(krill.get(index) + growthRate, maxKrill));
+        }
+    }
+
+    /**
+     * Return the number of krill in a cell.
+     * @param cell The index of the cell.
+     * @return The number of krill there.
+     */
+    public int get(int cell)
+    {
+        if(lazy) {
+            catchUp(cell);
+        }
+        return krill.get(cell);
+    }
+
+    /**
+     * Checks how much krill is available in a cell and returns
+     * how much was requested if no.ofKrill>=appetite or the remaining
+     * krill in that cell
+     * @param appetite The number of krill wanted.
+     * @param cell The index of the cell to eat from.
+     * @return The number of krill eaten.
+     */
+    public int eat(int appetite, int cell)
+    {
+        if(lazy) {
+            catchUp(cell);
+        }
+        int available = krill.get(cell);
+        int left = available - appetite;
+        int eaten = 0;
+        if (available > 0) {
+            if (appetite > available){
+                eaten = available;
+            }
+            else {
+                eaten = appetite;
+            }
+        }
+        krill.set(cell, left - eaten);
+        return eaten;
+    }
+
+    /**
+     * Record a round of growth under the given weather, for cells to
+     * catch up with later. If the record is full, every cell catches up
+     * first and the record starts again.
+     * @param environment The conditions of the current step.
+     */
+    private void recordRound(Environment environment)
+    {
+        if(rounds + 1 >= rainyRounds.length) {
+            catchUpAll();
+        }
+        boolean raining = environment.isRaining();
+        boolean drought = environment.isDrought();
+        rainyRounds[rounds + 1] = rainyRounds[rounds] + (raining ? 1 : 0);
+        droughtRounds[rounds + 1] = droughtRounds[rounds] + (drought ? 1 : 0);
+        rounds++;
+    }
+
+    /**
+     * Apply the growth a cell has missed since it was last looked at.
+     * Each round the krill grow with a probability depending on the
+     * weather, until they reach the maximum, so only the number of
+     * successes up to the number needed to reach the maximum matters,
+     * whatever order the rounds came in.
+     * @param cell The index of the cell.
+     */
+    private void catchUp(int cell)
+    {
+        int from = grownTo.get(cell);
+        if(from == rounds) {
+            return;
+        }
+        grownTo.set(cell, rounds);
+        int count = krill.get(cell);
+        if(count >= maxKrill) {
+            krill.set(cell, maxKrill);
+            return;
+        }
+        int needed = (maxKrill - count + growthRate - 1) / growthRate;
+        int rainy = rainyRounds[rounds] - rainyRounds[from];
+        int drought = droughtRounds[rounds] - droughtRounds[from];
+        int normal = rounds - from - rainy - drought;
+        int grown = successes(rainy, rainGrowthProbability, needed);
+        grown += successes(normal, growthProbability, needed - grown);
+        grown += droughtSkip.successes(drought, needed - grown, rand);
+        krill.set(cell, Math.min(count + grown * growthRate, maxKrill));
+    }
+
+    /**
+     * Bring every cell of a lazy layer up to date, and start a new history.
+     */
+    private void catchUpAll()
+    {
+        if(!lazy) {
+            return;
+        }
+        for(int cell = 0; cell < krill.length(); cell++) {
+            catchUp(cell);
+        }
+        rounds = 0;
+        grownTo.fill(0);
+    }
+
+    /**
+     * Count the successes in a number of trials, stopping early once
+     * enough have been found.
+     * @param trials The number of trials.
+     * @param probability The chance of each trial succeeding.
+     * @param wanted The most successes of interest.
+     * @return The number of successes, at most wanted.
+     */
+    private static int successes(int trials, double probability, int wanted)
+    {
+        int found = 0;
+        for(int i = 0; i < trials && found < wanted; i++) {
+            if(rand.nextDouble() <= probability) {
+                found++;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Copy the krill, and any growth history, into a snapshot.
+     * @param state The snapshot to fill in.
+     */
+    void saveTo(SimulationState state)
+    {
+        state.lazyKrill = lazy;
+        state.bulkGrowth = bulk;
+        if(state.krill == null || state.krill.length != krill.length()) {
+            state.krill = new int[krill.length()];
+        }
+        krill.copyTo(state.krill);
+        state.krillRounds = rounds;
+        if(lazy) {
+            if(state.grownTo == null || state.grownTo.length != grownTo.length()) {
+                state.grownTo = new int[grownTo.length()];
+            }
+            grownTo.copyTo(state.grownTo);
+            // Only the rounds so far are saved, so longer arrays are kept.
+            if(state.rainyRounds == null || state.rainyRounds.length < rounds + 1) {
+                state.rainyRounds = new int[rainyRounds.length];
+                state.droughtRounds = new int[droughtRounds.length];
+            }
+            System.arraycopy(rainyRounds, 0, state.rainyRounds, 0, rounds + 1);
+            System.arraycopy(droughtRounds, 0, state.droughtRounds, 0, rounds + 1);
+        }
+    }
+
+    /**
+     * Restore the krill, and any growth history, from a snapshot.
+     * @param state The snapshot to restore.
+     */
+    void loadFrom(SimulationState state)
+    {
+        lazy = state.lazyKrill;
+        bulk = state.bulkGrowth;
+        krill.copyFrom(state.krill);
+        rounds = state.krillRounds;
+        if(lazy) {
+            if(grownTo == null) {
+                grownTo = storage.allocate(krill.length());
+            }
+            grownTo.copyFrom(state.grownTo);
+            // Checkpoints from before the record was limited may hold more rounds.
+            int history = Math.max(MAX_HISTORY, rounds) + 1;
+            rainyRounds = Arrays.copyOf(state.rainyRounds, history);
+            droughtRounds = Arrays.copyOf(state.droughtRounds, history);
+        }
+        else {
+            grownTo = null;
+            rainyRounds = null;
+            droughtRounds = null;
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/**
+ * A random number generator producing exactly the same numbers as
+ * java.util.Random with the same seed, using the same linear
+ * congruential formula, but keeping its state in a plain field
+ * rather than an atomic one. It is therefore faster, not thread-safe,
+ * and its state can be saved and restored.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class LcgRandom extends SeededRandom
+{
+    // Random is serializable.
+    private static final long serialVersionUID = 1L;
+    // The constants of the linear congruential formula used by java.util.Random.
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    // The 48 bit state. Not initialised here, as setSeed is called from the superclass constructor.
+    private long state;
+
+    /**
+     * Create a generator with the given seed.
+     * @param seed The initial seed.
+     */
+    public LcgRandom(long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * Set the seed as java.util.Random would.
+     * @param seed The new seed.
+     */
+    public void setSeed(long seed)
+    {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    /**
+     * Generate the next pseudorandom bits.
+     * @param bits The number of random bits wanted.
+     * @return An int whose low bits are random.
+     */
+    protected int next(int bits)
+    {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    /**
+     * @return The 48 bit state, as a single long.
+     */
+    public long[] getState()
+    {
+        return new long[] {state};
+    }
+
+    /**
+     * @param state A state previously returned by getState.
+     */
+    public void setState(long[] state)
+    {
+        this.state = state[0];
+    }
+}
@@ -0,0 +1,266 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps the clock that animals' ages and food levels are measured by,
+ * and kills each animal on the step it dies of old age or hunger.
+ *
+ * Rather than counting its age up and its food down every step, an
+ * animal remembers the step it was born and the step it last ate, and
+ * works out its age and food level from the clock when asked. From
+ * those it can also work out the step on which it will die (see
+ * Animal.getDeathStep). Only eating puts that step off, and it can
+ * never come sooner.
+ *
+ * The animals are kept in a hierarchical timing wheel keyed by that
+ * step. The wheel has LEVELS levels of SLOTS slots each; an animal due
+ * within the current run of SLOTS steps sits in a slot of the lowest
+ * level, one due later in a slot of the level for the highest base
+ * SLOTS digit in which its step differs from the clock. When the clock
+ * reaches the start of a slot of a higher level, that slot's animals
+ * are spread over the levels below it. Each step then only looks at
+ * the animals in one slot of the lowest level.
+ *
+ * Eating does not move an animal in the wheel. When its slot comes
+ * round, the animal is checked again: if it has eaten since, it is put
+ * back for its new step, and otherwise it dies. So the wheel is only
+ * changed between the animals' turns, never by the animals themselves,
+ * and animals acting on several threads cannot disturb it.
+ *
+ * Deaths due on a step happen before any animal acts. The animals used
+ * to find out, each on its own turn, whether they had died, so
+ * neighbours that acted first could still see, eat or mate with them.
+ * setScheduled(false) brings that back, to reproduce earlier runs
+ * exactly; the animals then check their death step on their turn.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class LifecycleScheduler
+{
+    // The number of bits of a step each level of the wheel covers.
+    private static final int SLOT_BITS = 6;
+    // The number of slots in each level.
+    private static final int SLOTS = 1 << SLOT_BITS;
+    // The number of levels, covering 2^30 steps ahead of the clock.
+    private static final int LEVELS = 5;
+    // The slot for animals due even further ahead than that.
+    private static final int FAR = LEVELS * SLOTS;
+
+    // The current step.
+    private int step;
+    // The hour of the day of step 0, so that step + hourOffset is the hour of a step.
+    private int hourOffset;
+    // The number of daytime steps since the clock was reset, up to and including the current step.
+    private int daySteps;
+    // Whether animals die when the wheel says, rather than on their own turn.
+    private boolean scheduled;
+    // The animals due in each slot of each level, then those due too far ahead for any.
+    private List<List<Animal>> slots;
+
+    /**
+     * Create a scheduler with its clock at step 0 at dawn.
+     */
+    public LifecycleScheduler()
+    {
+        slots = new ArrayList<>();
+        for(int i = 0; i <= FAR; i++) {
+            slots.add(new ArrayList<>());
+        }
+        scheduled = true;
+        reset(0, Environment.DAWN);
+    }
+
+    /**
+     * Set the clock and empty the wheel. Animals made afterwards measure
+     * their age and food from this step.
+     * @param step The current step.
+     * @param hour The hour of the current step.
+     */
+    public void reset(int step, int hour)
+    {
+        this.step = step;
+        hourOffset = hour - step;
+        daySteps = 0;
+        clear();
+    }
+
+    /**
+     * Choose whether animals die when the wheel says, before the
+     * animals act, or when each finds out on its own turn, as in earlier
+     * versions. Changing it empties the wheel, so the animals should be
+     * scheduled again.
+     * @param scheduled true for deaths from the wheel.
+     */
+    public void setScheduled(boolean scheduled)
+    {
+        this.scheduled = scheduled;
+        clear();
+    }
+
+    /**
+     * @return true if animals die when the wheel says.
+     */
+    public boolean isScheduled()
+    {
+        return scheduled;
+    }
+
+    /**
+     * @return The current step.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The hour of the current step.
+     */
+    public int getHour()
+    {
+        return step + hourOffset;
+    }
+
+    /**
+     * @return The number of daytime steps since the clock was reset,
+     *         including the current step.
+     */
+    public int getDaySteps()
+    {
+        return daySteps;
+    }
+
+    /**
+     * Find the step on which a number of daytime steps after the
+     * current one will have gone by.
+     * @param count The number of daytime steps, at least 1.
+     * @return The step of the last of them.
+     */
+    public int stepAfterDaySteps(int count)
+    {
+        int next = step;
+        // Every whole day has the same number of daytime steps.
+        int perDay = Environment.DUSK - Environment.DAWN + 1;
+        while(count > perDay) {
+            next += Environment.STEPS_IN_DAY;
+            count -= perDay;
+        }
+        while(count > 0) {
+            next++;
+            if(Environment.isDaytime(next + hourOffset)) {
+                count--;
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Move the clock on to the next step, and kill the animals due to
+     * die on it if deaths are scheduled.
+     * @param newStep The new step, one after the current one.
+     */
+    public void advance(int newStep)
+    {
+        step = newStep;
+        if(Environment.isDaytime(step + hourOffset)) {
+            daySteps++;
+        }
+        if(!scheduled) {
+            return;
+        }
+        // Spread out the higher slots that start on this step, highest first.
+        int level = 0;
+        while(level < LEVELS && (step & ((1 << (SLOT_BITS * (level + 1))) - 1)) == 0) {
+            level++;
+        }
+        for(; level > 0; level--) {
+            cascade(level == LEVELS ? FAR : slotIndex(level, step));
+        }
+        List<Animal> due = slots.get(slotIndex(0, step));
+        for(int i = 0; i < due.size(); i++) {
+            Animal animal = due.get(i);
+            if(animal.isAlive()) {
+                int deathStep = animal.getDeathStep();
+                if(deathStep <= step) {
+                    animal.setDead();
+                }
+                else {
+                    insert(animal, deathStep);
+                }
+            }
+        }
+        due.clear();
+    }
+
+    /**
+     * Put animals in the wheel, if deaths are scheduled.
+     * @param animals The animals, usually those just born or placed.
+     */
+    public void scheduleAll(List<Animal> animals)
+    {
+        if(!scheduled) {
+            return;
+        }
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                insert(animal, animal.getDeathStep());
+            }
+        }
+    }
+
+    /**
+     * Put an animal in the slot for the step it is due to die.
+     * @param animal The animal.
+     * @param deathStep The step it is due to die, after the current one.
+     */
+    private void insert(Animal animal, int deathStep)
+    {
+        // The level is that of the highest digit in which the steps differ.
+        int differing = deathStep ^ step;
+        int level = 0;
+        while(level < LEVELS && (differing >>> (SLOT_BITS * (level + 1))) != 0) {
+            level++;
+        }
+        slots.get(level == LEVELS ? FAR : slotIndex(level, deathStep)).add(animal);
+    }
+
+    /**
+     * Take every animal out of a slot and put it back for its death
+     * step, which now falls in a lower level.
+     * @param index The index of the slot.
+     */
+    private void cascade(int index)
+    {
+        List<Animal> slot = slots.get(index);
+        if(slot.isEmpty()) {
+            return;
+        }
+        List<Animal> moving = new ArrayList<>(slot);
+        slot.clear();
+        for(Animal animal : moving) {
+            if(animal.isAlive()) {
+                insert(animal, animal.getDeathStep());
+            }
+        }
+    }
+
+    /**
+     * @param level A level of the wheel.
+     * @param step A step.
+     * @return The index of the slot of that level the step falls in.
+     */
+    private static int slotIndex(int level, int step)
+    {
+        return level * SLOTS + ((step >>> (SLOT_BITS * level)) & (SLOTS - 1));
+    }
+
+    /**
+     * Empty the wheel.
+     */
+    private void clear()
+    {
+        for(List<Animal> slot : slots) {
+            slot.clear();
+        }
+    }
+}
@@ -1,5 +1,8 @@
 /**
  * Represent a location in a rectangular grid.
+ * The simulation itself refers to cells by their index in the field
+ * (see Field.getCell), so locations are only made for code that asks
+ * for them, such as the list-returning methods of Field.
  * 
  * @author Mohammad Talal Hassan and Luke Kensik
  * @version 2016.02.29
@@ -7,8 +10,8 @@
 public class Location
 {
     // Row and column positions.
-    private int row;
-    private int col;
+    private final int row;
+    private final int col;
 
     /**
      * Represent a row and column.
@@ -47,14 +50,14 @@ public class Location
     }
     
     /**
-     * Use the top 16 bits for the row value and the bottom for
-     * the column. Except for very big grids, this should give a
-     * unique hash code for each (row, col) pair.
+     * Spread the row over all 32 bits by multiplying it by a large odd
+     * number before adding the column, so that neighbouring rows do not
+     * collide however wide the grid is.
      * @return A hashcode for the location.
      */
     public int hashCode()
     {
-        return (row << 16) + col;
+        return row * 0x9E3779B1 + col;
     }
     
     /**
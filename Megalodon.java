@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -12,28 +11,29 @@ import java.util.Random;
  */
 public class Megalodon extends Predator
 {
-    // Characteristics shared by all megalodones (class variables).
+    // The default characteristics of megalodones, used unless the simulation's
+    // parameters give others (see SimulationParameters).
     
     // The age at which a megalodon can start to breed.
-    private static final int BREEDING_AGE = 15;
+    static final int BREEDING_AGE = 15;
     // The age to which a megalodon can live.
-    private static final int MAX_AGE = 500;
+    static final int MAX_AGE = 500;
     // The likelihood of a megalodon breeding.
-    private static final double BREEDING_PROBABILITY = 0.10;
+    static final double BREEDING_PROBABILITY = 0.10;
     // Likelihood that a megalodon may move at night
-    private static final double NIGHT_MOVING_PROB = 0.1;
+    static final double NIGHT_MOVING_PROB = 0.1;
     // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 2;
+    static final int MAX_LITTER_SIZE = 2;
     // The food value of a single rabbit.
-    private static final int RABBIT_FOOD_VALUE = 10;
+    static final int RABBIT_FOOD_VALUE = 10;
     // The food value of a single fox.
-    private static final int FOX_FOOD_VALUE = 25;
+    static final int FOX_FOOD_VALUE = 25;
     // The food value of a single whale.
-    private static final int WHALE_FOOD_VALUE = 100;
+    static final int WHALE_FOOD_VALUE = 100;
     // Chance they catch the disease from prey
-    private static final double DISEASED_PREY_INFECTION = 0.60;
+    static final double DISEASED_PREY_INFECTION = 0.60;
     // Maximum amount of food a megalodon can eat
-    private static final int HUNGER_CAP = 200;
+    static final int HUNGER_CAP = 200;
     // A shared random number generator to control breeding.
     private static final Random rand = Randomizer.getRandom();
 
@@ -44,27 +44,37 @@ public class Megalodon extends Predator
      * 
      * @param randomAge If true, the megalodon will have random age and hunger level.
      * @param field The field currently occupied.
+     * @param cell The index of the cell within the field.
+     */
+    public Megalodon(boolean randomAge, Field field, int cell)
+    {
+        super(randomAge, true, field, cell);
+    }
+    
+    /**
+     * Create a megalodon at the given location.
+     * 
+     * @param randomAge If true, the megalodon will have a random age.
+     * @param field The field currently occupied.
      * @param location The location within the field.
      */
     public Megalodon(boolean randomAge, Field field, Location location)
     {
-        super(randomAge, true ,field, location, MAX_AGE, HUNGER_CAP);
-
+        this(randomAge, field, field.getCell(location));
     }
     
     /**
      * This is what the megalodon does most of the time: it hunts for
      * rabbits, foxes, and whales. In the process, it might breed, die of hunger,
      * die of old age, or die of disease
-     * @param field The field currently occupied.
+     * @param environment The conditions of the current step.
      * @param newMegalodon A list to return newly born megalodones.
      */
-    public void act(List<Animal> newMegalodons)
+    public void act(Environment environment, List<Animal> newMegalodons)
     {
-        incrementAge(MAX_AGE);
-        incrementHunger();
-        if(isAlive() && getField().getIsDay()) {
-            animalIsDiseased();
+        dieIfDue();
+        if(isAlive() && environment.isDay()) {
+            animalIsDiseased(environment);
             if(deathByDisease()){
                 return;
             }
@@ -72,7 +82,7 @@ public class Megalodon extends Predator
             
             hunt();
         }
-        else if (isAlive() && !getField().getIsDay()){ 
+        else if (isAlive() && !environment.isDay()){ 
             actNight();
         }
     }
@@ -83,10 +93,10 @@ public class Megalodon extends Predator
      */
     private void actNight()
     {
-        if (getFoodLevel() < WHALE_FOOD_VALUE/2){
+        if (getFoodLevel() < getTraits().getNightHuntingFoodLevel()){
             hunt();
         }
-        else if (rand.nextDouble() <= NIGHT_MOVING_PROB) {
+        else if (rand.nextDouble() <= getTraits().getNightMovingProbability()) {
             hunt();
         }
     }
@@ -96,45 +106,19 @@ public class Megalodon extends Predator
      * Only the first live animal (rabbit, whale, or fox) is eaten.
      * There is also a chance that if they ate a diseased animal, they 
      * could catch the disease as well
-     * @return Where food was found, or null if it wasn't.
+     * @return The cell where food was found, or -1 if it wasn't.
      */
-    public Location findFood()
+    public int findFood()
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Rabbit) {
-                Rabbit rabbit = (Rabbit) animal;
-                if(rabbit.isAlive()) { 
-                    eat(RABBIT_FOOD_VALUE, HUNGER_CAP);
-                    diseaseFromInfectedAnimal(rabbit);
-                    rabbit.setDead();
-                    return where;
-                }
-            }
-            else if (animal instanceof Whale){
-                Whale whale = (Whale) animal;
-                if (whale.isAlive()){
-                    eat(WHALE_FOOD_VALUE, HUNGER_CAP);
-                    diseaseFromInfectedAnimal(whale);
-                    whale.setDead();                    
-                    return where;
-                }
-            }
-            else if (animal instanceof Fox){
-                Fox fox = (Fox) animal;
-                if (fox.isAlive()){
-                    eat(FOX_FOOD_VALUE, HUNGER_CAP);
-                    diseaseFromInfectedAnimal(fox);
-                    fox.setDead();                    
-                    return where;
-                }
-            }
+        int prey = Species.bit(Species.RABBIT) | Species.bit(Species.WHALE) | Species.bit(Species.FOX);
+        int where = findAdjacentAnimal(prey, Field.ANY_SEX);
+        if(where >= 0) {
+            Animal animal = (Animal) getField().getObjectAt(where);
+            eat(getTraits().getFoodValue(animal.getSpecies()));
+            diseaseFromInfectedAnimal(animal);
+            animal.setDead();
         }
-        return null;
+        return where;
     }
     
     /**
@@ -144,20 +128,11 @@ public class Megalodon extends Predator
      */
     private void findMate(List<Animal> newMegalodon)
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Megalodon) {
-                Megalodon megalodon = (Megalodon) animal;
-                if (megalodon.isMale() != this.isMale()){
-                    giveBirth(newMegalodon);
-                    matingDisease(megalodon);
-                    return;
-                }
-            }
+        int where = findAdjacentAnimal(Species.bit(Species.MEGALODON), getOppositeSex());
+        if(where >= 0) {
+            Megalodon megalodon = (Megalodon) getField().getObjectAt(where);
+            giveBirth(newMegalodon);
+            matingDisease(megalodon);
         }
     }
     
@@ -171,11 +146,10 @@ public class Megalodon extends Predator
         // New megalodones are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int free = findFreeAdjacentCells();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Megalodon young = new Megalodon(false, field, loc);
+        for(int b = 0; b < births && b < free; b++) {
+            Megalodon young = new Megalodon(false, field, getAdjacentCell(b));
             newMegalodon.add(young);
         }
     }
@@ -188,8 +162,8 @@ public class Megalodon extends Predator
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        if(canBreed() && rand.nextDouble() <= getTraits().getBreedingProbability()) {
+            births = rand.nextInt(getTraits().getMaxLitterSize()) + 1;
         }
         return births;
     }
@@ -200,6 +174,15 @@ public class Megalodon extends Predator
      */
     private boolean canBreed()
     {
-        return getAge() >= BREEDING_AGE;
+        return getAge() >= getTraits().getBreedingAge();
+    }
+    
+    /**
+     * Return the number identifying the megalodon species.
+     * @return Species.MEGALODON
+     */
+    protected int getSpecies()
+    {
+        return Species.MEGALODON;
     }
 }
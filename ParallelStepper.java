@@ -0,0 +1,233 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Lets the animals of a simulation act on several threads at once.
+ * The field is split into square tiles, and the tiles are coloured like
+ * a chessboard with four colours, so that no two tiles of the same colour
+ * touch, even at a corner. An animal only ever looks at and changes the
+ * 3x3 neighbourhood around where it started, so while tiles of one
+ * colour are being processed no two threads can touch the same cell.
+ * The four colours are processed one after another.
+ *
+ * Each animal still acts exactly once per step. Animals act in order of
+ * their tile, and in list order within a tile. Each tile draws its random
+ * numbers from its own stream, derived from the step and tile number, so
+ * the results are the same however many threads are used.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class ParallelStepper
+{
+    // The default length of the side of a tile, in cells.
+    public static final int DEFAULT_TILE_SIZE = 32;
+    // Tiles must be at least this big for same-coloured tiles never to share a neighbourhood.
+    private static final int MIN_TILE_SIZE = 2;
+    // The number of tile colours.
+    private static final int COLOURS = 4;
+
+    // The threads that the tiles are processed on.
+    private ForkJoinPool pool;
+    // The length of the side of a tile, in cells.
+    private int tileSize;
+    // The number of rows and columns of tiles covering the field.
+    private int tileRows, tileCols;
+    // The animals starting the step in each tile.
+    private List<List<Animal>> residents;
+    // The animals born in each tile during the step.
+    private List<List<Animal>> newborns;
+    // The tiles of each colour.
+    private int[][] tilesByColour;
+    // The random number stream of each tile, reseeded every step.
+    private SeededRandom[] streams;
+    // The conditions of the step being processed, shared by every tile.
+    private Environment environment;
+    // The generator of the thread stepping the simulation, whose seed and
+    // family the tile streams take after.
+    private SeededRandom root;
+
+    /**
+     * Create a stepper using the given number of threads and the
+     * default tile size.
+     * @param threads The number of threads to use.
+     */
+    public ParallelStepper(int threads)
+    {
+        this(threads, DEFAULT_TILE_SIZE);
+    }
+
+    /**
+     * Create a stepper using the given number of threads and tile size.
+     * @param threads The number of threads to use.
+     * @param tileSize The length of the side of a tile, in cells.
+     *                 Must be at least 2.
+     */
+    public ParallelStepper(int threads, int tileSize)
+    {
+        if(threads < 1) {
+            throw new IllegalArgumentException("At least one thread is needed: " + threads);
+        }
+        if(tileSize < MIN_TILE_SIZE) {
+            throw new IllegalArgumentException("Tiles must be at least " + MIN_TILE_SIZE
+                                               + " cells across: " + tileSize);
+        }
+        this.tileSize = tileSize;
+        pool = new ForkJoinPool(threads);
+        residents = new ArrayList<>();
+        newborns = new ArrayList<>();
+    }
+
+    /**
+     * Make every living animal act once.
+     * @param animals The animals in the field. On return it holds the
+     *                animals still alive, in tile order.
+     * @param field The field the animals live in.
+     * @param newAnimals A list to receive newly born animals.
+     * @param environment The conditions of the step. Its step number
+     *                    seeds each tile's random number stream.
+     */
+    public void actAll(List<Animal> animals, Field field, List<Animal> newAnimals,
+                       Environment environment)
+    {
+        this.environment = environment;
+        root = Randomizer.current();
+        layOutTiles(field.getDepth(), field.getWidth());
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                int cell = animal.getCell();
+                int tile = (field.getRow(cell) / tileSize) * tileCols + field.getCol(cell) / tileSize;
+                residents.get(tile).add(animal);
+            }
+        }
+
+        for(int colour = 0; colour < COLOURS; colour++) {
+            int[] tiles = tilesByColour[colour];
+            if(tiles.length > 0) {
+                pool.invoke(new TileTask(tiles, 0, tiles.length));
+            }
+        }
+
+        animals.clear();
+        for(int tile = 0; tile < residents.size(); tile++) {
+            for(Animal animal : residents.get(tile)) {
+                if(animal.isAlive()) {
+                    animals.add(animal);
+                }
+            }
+            newAnimals.addAll(newborns.get(tile));
+            residents.get(tile).clear();
+            newborns.get(tile).clear();
+        }
+    }
+
+    /**
+     * Stop the threads. The stepper cannot be used afterwards.
+     */
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Work out the tiles covering a field of the given size, if they
+     * have not been worked out already.
+     * @param depth The depth of the field.
+     * @param width The width of the field.
+     */
+    private void layOutTiles(int depth, int width)
+    {
+        int rows = (depth + tileSize - 1) / tileSize;
+        int cols = (width + tileSize - 1) / tileSize;
+        if(rows == tileRows && cols == tileCols) {
+            return;
+        }
+        tileRows = rows;
+        tileCols = cols;
+        residents.clear();
+        newborns.clear();
+        int[] counts = new int[COLOURS];
+        for(int tile = 0; tile < rows * cols; tile++) {
+            residents.add(new ArrayList<>());
+            newborns.add(new ArrayList<>());
+            counts[colourOf(tile)]++;
+        }
+        streams = new SeededRandom[rows * cols];
+        tilesByColour = new int[COLOURS][];
+        for(int colour = 0; colour < COLOURS; colour++) {
+            tilesByColour[colour] = new int[counts[colour]];
+            counts[colour] = 0;
+        }
+        for(int tile = 0; tile < rows * cols; tile++) {
+            int colour = colourOf(tile);
+            tilesByColour[colour][counts[colour]++] = tile;
+        }
+    }
+
+    /**
+     * @return The colour of a tile.
+     */
+    private int colourOf(int tile)
+    {
+        return (tile / tileCols % 2) * 2 + tile % tileCols % 2;
+    }
+
+    /**
+     * Make the animals in a range of same-coloured tiles act, splitting
+     * the range between threads.
+     */
+    private class TileTask extends RecursiveAction
+    {
+        // RecursiveAction is serializable, though tasks are never serialized.
+        private static final long serialVersionUID = 1L;
+
+        private int[] tiles;
+        private int from, to;
+
+        /**
+         * @param tiles Tiles of a single colour.
+         * @param from The first of the tiles to process.
+         * @param to One past the last of the tiles to process.
+         */
+        public TileTask(int[] tiles, int from, int to)
+        {
+            this.tiles = tiles;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Process the tiles, or split them in two if there are several.
+         */
+        protected void compute()
+        {
+            if(to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(tiles, from, middle), new TileTask(tiles, middle, to));
+                return;
+            }
+            int tile = tiles[from];
+            long seed = Randomizer.streamSeed(root, environment.getStep(), tile);
+            if(streams[tile] == null || streams[tile].getClass() != root.getClass()) {
+                streams[tile] = Randomizer.newGenerator(root, seed);
+            }
+            else {
+                streams[tile].setSeed(seed);
+            }
+            SeededRandom previous = Randomizer.bind(streams[tile]);
+            try {
+                List<Animal> born = newborns.get(tile);
+                for(Animal animal : residents.get(tile)) {
+                    // An animal may have been eaten by a neighbour.
+                    if(animal.isAlive() && !(environment.isPreyResting() && animal instanceof Prey)) {
+                        animal.act(environment, born);
+                    }
+                }
+            }
+            finally {
+                Randomizer.bind(previous);
+            }
+        }
+    }
+}
@@ -8,42 +8,51 @@ import java.util.Random;
 public abstract class Predator extends Animal
 {
     // Chance a predator catches the disease from prey
-    private static final double DISEASED_PREY_INFECTION = 0.60;
+    static final double DISEASED_PREY_INFECTION = 0.60;
     // A default value for food level
-    private static final int DEFAULT_FOOD_LEVEL = 10;
+    static final int DEFAULT_FOOD_LEVEL = 10;
     
     private static final Random rand = Randomizer.getRandom();
-    // The predator's age.
-    private int age;
-    // The predator's food level, which is increased by eating other animals.
-    private int foodLevel;
+    // The step on which the predator's age was zero.
+    private int bornAt;
+    // The step the predator last ate on.
+    private int fedAt;
+    // The predator's food level just after it last ate. It drops by one
+    // every step after that.
+    private int fedLevel;
     /**
      * Constructor for objects of class Predatot
      */
-    public Predator(boolean randomAge, boolean defaultFL, Field field, Location location, int maxAge, int hungerCap)
+    public Predator(boolean randomAge, boolean defaultFL, Field field, int cell)
     {
-        super(field, location);
+        super(field, cell);
+        int hungerCap = getTraits().getHungerCap();
+        int age;
+        int foodLevel;
         if(randomAge) {
-            age = rand.nextInt(maxAge);
+            age = rand.nextInt(getTraits().getMaxAge());
             foodLevel = rand.nextInt(hungerCap);            
         }
         else {
             age = 0;
             if (defaultFL) {
-                foodLevel = DEFAULT_FOOD_LEVEL;
+                foodLevel = getParameters().getDefaultFoodLevel();
             }
             else{
                 foodLevel = hungerCap/3;
             }
         }
+        bornAt = getLifecycle().getStep() - age;
+        setFoodLevel(foodLevel);
     }
     
     /**
      * Make this animal act - that is: make it do
      * whatever it wants/needs to do.
+     * @param environment The conditions of the current step.
      * @param newAnimals A list to receive newly born animals.
      */
-    abstract public void act(List<Animal> newAnimals);
+    abstract public void act(Environment environment, List<Animal> newAnimals);
         
     /**
      * Look for food adjacent to its current position
@@ -52,14 +61,14 @@ public abstract class Predator extends Animal
     protected void hunt()
     {
         // Move towards a source of food if found.
-        Location newLocation = findFood();
-        if(newLocation == null) { 
+        int newCell = findFood();
+        if(newCell < 0) { 
             // No food found - try to move to a free location.
-            newLocation = getField().freeAdjacentLocation(getLocation());
+            newCell = getField().freeAdjacentCell(getCell());
         }
         // See if it was possible to move.
-        if(newLocation != null) {
-            setLocation(newLocation);
+        if(newCell >= 0) {
+            setCell(newCell);
         }
         else {
             // Overcrowding.
@@ -68,44 +77,49 @@ public abstract class Predator extends Animal
     }
     
     /**
-     * Increase the age. This could result in the megalodon's death.
+     * Return the step the predator dies on: the step after it passes
+     * its maximum age, or the step its food runs out, whichever is first.
+     * @return The step the predator dies on unless it eats first.
      */
-    protected void incrementAge(int maxAge)
+    protected int getDeathStep()
     {
-        age++;
-        if(age > maxAge) {
-            setDead();
-        }
-    }
-    
-    /**
-     * Make this megalodon more hungry. This could result in the megalodon's death.
-     */
-    protected void incrementHunger()
-    {
-        foodLevel--;
-        if(foodLevel <= 0) {
-            setDead();
-        }
+        int oldAge = bornAt + getTraits().getMaxAge() + 1;
+        int starved = fedAt + Math.max(fedLevel, 1);
+        return Math.min(oldAge, starved);
     }
     
     /**
      * Make the predator find another animal to eat
+     * @return The cell where food was found, or -1 if none was.
      */
-    protected abstract Location findFood();
+    protected abstract int findFood();
     
     /**
      * Increased the food level of the megalodon up to its hunger cap
      * @param food value of food to eat as int
      */
-    protected void eat(int food, int hungerCap)
+    protected void eat(int food)
     {
+        int hungerCap = getTraits().getHungerCap();
+        int foodLevel = getFoodLevel();
         if (food+foodLevel > hungerCap){
             foodLevel = hungerCap;
         }
         else{
             foodLevel += food;
         }
+        setFoodLevel(foodLevel);
+    }
+    
+    /**
+     * Set the food level of the predator as of the current step, from
+     * which it drops by one every step
+     * @param foodLevel the new food level
+     */
+    private void setFoodLevel(int foodLevel)
+    {
+        fedAt = getLifecycle().getStep();
+        fedLevel = foodLevel;
     }
     
     /**
@@ -114,7 +128,7 @@ public abstract class Predator extends Animal
      */
     protected void diseaseFromInfectedAnimal(Animal animal)
     {
-        if (animal.isInfected() && rand.nextDouble() < DISEASED_PREY_INFECTION) {
+        if (animal.isInfected() && rand.nextDouble() < getParameters().getDiseasedPreyInfection()) {
             this.infectAnimal();
         }
     }
@@ -125,7 +139,7 @@ public abstract class Predator extends Animal
      */
     protected int getAge()
     {
-        return age;
+        return getLifecycle().getStep() - bornAt;
     }
     
     /**
@@ -134,6 +148,17 @@ public abstract class Predator extends Animal
      */
     protected int getFoodLevel()
     {
-        return foodLevel;
+        return fedLevel - (getLifecycle().getStep() - fedAt);
+    }
+    
+    /**
+     * Set the age and food level of the predator animal
+     * @param age the age of the predator animal
+     * @param foodLevel the food level of the predator animal
+     */
+    protected void restoreCondition(int age, int foodLevel)
+    {
+        bornAt = getLifecycle().getStep() - age;
+        setFoodLevel(foodLevel);
     }
 }
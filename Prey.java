@@ -10,33 +10,44 @@ public abstract class Prey extends Animal
     // instance variables - replace the example below with your own
 
     private static final Random rand = Randomizer.getRandom();    
-    // The prey animal's age.
-    private int age;
-    // The prey animal's food level, which is increased by eating krill.
-    private int foodLevel;
+    // The step on which the prey animal's age was zero.
+    private int bornAt;
+    // The step the prey animal last ate krill on.
+    private int fedAt;
+    // The number of daytime steps up to and including that step.
+    private int fedDaySteps;
+    // The prey animal's food level just after it last ate. It drops by
+    // one every daytime step after that; at night it stays the same.
+    private int fedLevel;
     
     /**
      * Constructor for objects of class Prey
      */
-    public Prey(boolean randomAge, Field field, Location location, int maxAge, int hungerCap)
+    public Prey(boolean randomAge, Field field, int cell)
     {
-       super(field, location);
+       super(field, cell);
+       int hungerCap = getTraits().getHungerCap();
+       int age;
+       int foodLevel;
        if(randomAge) {
-            age = rand.nextInt(maxAge);
+            age = rand.nextInt(getTraits().getMaxAge());
             foodLevel = rand.nextInt(hungerCap +1);
         }
         else {
             age = 0;
             foodLevel = hungerCap/2;
         }
+        bornAt = getLifecycle().getStep() - age;
+        setFoodLevel(foodLevel);
     }
 
     /**
      * Make this animal act - that is: make it do
      * whatever it wants/needs to do.
+     * @param environment The conditions of the current step.
      * @param newAnimals A list to receive newly born animals.
      */
-    abstract public void act(List<Animal> newAnimals);
+    abstract public void act(Environment environment, List<Animal> newAnimals);
     
     /**
      * Move the prey animal to a nearby location
@@ -44,9 +55,9 @@ public abstract class Prey extends Animal
     public void moveToNewLocation()
     {
         // Try to move into a free location.
-        Location newLocation = getField().freeAdjacentLocation(getLocation());
-        if(newLocation != null) {
-            setLocation(newLocation);
+        int newCell = getField().freeAdjacentCell(getCell());
+        if(newCell >= 0) {
+            setCell(newCell);
         }
         else {
             // Overcrowding.
@@ -57,45 +68,68 @@ public abstract class Prey extends Animal
     /**
      * What the whale does at night. It does not move and food level stays
      * constant. Still can spread and die from disease.
+     * Not called at all when the simulation lets prey rest through the
+     * night (see Simulator.setRestingPrey).
+     * @param environment The conditions of the current step.
      */
-    protected void actNight()
+    protected void actNight(Environment environment)
     {
-        foodLevel++;
-        animalIsDiseased();
+        animalIsDiseased(environment);
         deathByDisease();
     }
     
     /**
      * Eats krill if availible
      */
-    protected void findFood(int hungerCap)
+    protected void findFood()
     {
-        Location currentLocation = this.getLocation();
-        int foodCount = getField().eatKrill(hungerCap - foodLevel, this.getLocation());
-        foodLevel += foodCount;
+        int foodLevel = getFoodLevel();
+        int foodCount = getField().eatKrill(getTraits().getHungerCap() - foodLevel, getCell());
+        setFoodLevel(foodLevel + foodCount);
     }
     
     /**
-     * Increase the age.
-     * This could result in the whale's death.
+     * Set the food level of the prey animal as of the current step, from
+     * which it drops by one every daytime step
+     * @param foodLevel the new food level
      */
-    protected void incrementAge(int maxAge)
+    private void setFoodLevel(int foodLevel)
     {
-        age++;
-        if(age > maxAge) {
-            setDead();
-        }
+        LifecycleScheduler lifecycle = getLifecycle();
+        fedAt = lifecycle.getStep();
+        fedDaySteps = lifecycle.getDaySteps();
+        fedLevel = foodLevel;
     }
     
     /**
-     * Food level decreases, dies if out of food
+     * Return the step the prey animal dies on: the step after it passes
+     * its maximum age, or the step it starts with one food left, day or
+     * night, whichever is first.
+     * @return The step the prey animal dies on unless it eats first.
      */
-    protected void incrementHunger()
+    protected int getDeathStep()
     {
-        foodLevel--;
-        if(foodLevel <= 0) {
-            setDead();
+        LifecycleScheduler lifecycle = getLifecycle();
+        int oldAge = bornAt + getTraits().getMaxAge() + 1;
+        int starved;
+        if(fedLevel <= 1) {
+            starved = fedAt + 1;
+        }
+        else {
+            // The daytime steps still to go before only one food is left.
+            int remaining = getFoodLevel() - 1;
+            if(remaining > 0) {
+                starved = lifecycle.stepAfterDaySteps(remaining) + 1;
+            }
+            else if(remaining == 0 && Environment.isDaytime(lifecycle.getHour())) {
+                // The last food but one was used up on this step.
+                starved = lifecycle.getStep() + 1;
+            }
+            else {
+                starved = lifecycle.getStep();
+            }
         }
+        return Math.min(oldAge, starved);
     }
     
     /**
@@ -104,6 +138,26 @@ public abstract class Prey extends Animal
      */
     protected int getAge()
     {
-        return age;
+        return getLifecycle().getStep() - bornAt;
+    }
+    
+    /**
+     * Returns the food level of the prey animal
+     * @return the food level of the prey animal
+     */
+    protected int getFoodLevel()
+    {
+        return fedLevel - (getLifecycle().getDaySteps() - fedDaySteps);
+    }
+    
+    /**
+     * Set the age and food level of the prey animal
+     * @param age the age of the prey animal
+     * @param foodLevel the food level of the prey animal
+     */
+    protected void restoreCondition(int age, int foodLevel)
+    {
+        bornAt = getLifecycle().getStep() - age;
+        setFoodLevel(foodLevel);
     }
 }
@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -12,18 +11,19 @@ import java.util.Random;
  */
 public class Rabbit extends Prey
 {
-    // Characteristics shared by all rabbits (class variables).
+    // The default characteristics of rabbits, used unless the simulation's
+    // parameters give others (see SimulationParameters).
 
     // The age at which a rabbit can start to breed.
-    private static final int BREEDING_AGE = 5;
+    static final int BREEDING_AGE = 5;
     // The age to which a rabbit can live.
-    private static final int MAX_AGE = 30;
+    static final int MAX_AGE = 30;
     // The likelihood of a rabbit breeding.
-    private static final double BREEDING_PROBABILITY = 0.35;
+    static final double BREEDING_PROBABILITY = 0.35;
     // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 4;
+    static final int MAX_LITTER_SIZE = 4;
     // Maximum amount of food a rabbit can eat
-    private static final int HUNGER_CAP = 8;
+    static final int HUNGER_CAP = 8;
     // A shared random number generator to control breeding.
     private static final Random rand = Randomizer.getRandom();   
 
@@ -33,37 +33,49 @@ public class Rabbit extends Prey
      * 
      * @param randomAge If true, the rabbit will have a random age.
      * @param field The field currently occupied.
+     * @param cell The index of the cell within the field.
+     */
+    public Rabbit(boolean randomAge, Field field, int cell)
+    {
+        super(randomAge, field, cell);
+    }
+    
+    /**
+     * Create a rabbit at the given location.
+     * 
+     * @param randomAge If true, the rabbit will have a random age.
+     * @param field The field currently occupied.
      * @param location The location within the field.
      */
     public Rabbit(boolean randomAge, Field field, Location location)
     {
-        super(randomAge, field, location, MAX_AGE, HUNGER_CAP);        
+        this(randomAge, field, field.getCell(location));
     }
     
     /**
      * This is what the rabbit does most of the time - it hops 
      * around, and eats krill. Sometimes it will breed or die of old age,
      * die of hunger, or die of disease
+     * @param environment The conditions of the current step.
      * @param newRabbits A list to return newly born rabbits.
      */
-    public void act(List<Animal> newRabbits)
+    public void act(Environment environment, List<Animal> newRabbits)
     {
-        incrementAge(MAX_AGE);
-        incrementHunger();
+        dieIfDue();
         
-        if(isAlive() && getField().getIsDay()) {
-            animalIsDiseased();
+        if(isAlive() && environment.isDay()) {
+            animalIsDiseased(environment);
             if(deathByDisease()){
                 return;
             }
             findMate(newRabbits);
             
-            findFood(HUNGER_CAP);
+            findFood();
             
             moveToNewLocation();
         }
-        else if (isAlive() && !getField().getIsDay()){
-            actNight();
+        else if (isAlive() && !environment.isDay()){
+            actNight(environment);
         }
     }
     
@@ -74,19 +86,11 @@ public class Rabbit extends Prey
      */
     private void findMate(List<Animal> newRabbits)
     {
-        List<Location> adjacent = getField().adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = getField().getObjectAt(where);
-            if(animal instanceof Rabbit) {
-                Rabbit rabbit = (Rabbit) animal;
-                if (rabbit.isMale() != this.isMale()){
-                    giveBirth(newRabbits);
-                    matingDisease(rabbit);
-                    return;
-                }
-            }
+        int where = findAdjacentAnimal(Species.bit(Species.RABBIT), getOppositeSex());
+        if(where >= 0) {
+            Rabbit rabbit = (Rabbit) getField().getObjectAt(where);
+            giveBirth(newRabbits);
+            matingDisease(rabbit);
         }
     }
     
@@ -100,11 +104,10 @@ public class Rabbit extends Prey
         // New rabbits are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int free = findFreeAdjacentCells();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Rabbit young = new Rabbit(false, field, loc);
+        for(int b = 0; b < births && b < free; b++) {
+            Rabbit young = new Rabbit(false, field, getAdjacentCell(b));
             newRabbits.add(young);
         }
     }
@@ -117,8 +120,8 @@ public class Rabbit extends Prey
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        if(canBreed() && rand.nextDouble() <= getTraits().getBreedingProbability()) {
+            births = rand.nextInt(getTraits().getMaxLitterSize()) + 1;
         }
         return births;
     }
@@ -129,6 +132,15 @@ public class Rabbit extends Prey
      */
     private boolean canBreed()
     {
-        return getAge() >= BREEDING_AGE;
+        return getAge() >= getTraits().getBreedingAge();
+    }
+    
+    /**
+     * Return the number identifying the rabbit species.
+     * @return Species.RABBIT
+     */
+    protected int getSpecies()
+    {
+        return Species.RABBIT;
     }
 }
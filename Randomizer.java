@@ -1,52 +1,304 @@
-import java.util.Random;
-
-/**
- * Provide control over the randomization of the simulation. By using the shared, fixed-seed 
- * randomizer, repeated runs will perform exactly the same (which helps with testing). Set 
- * 'useShared' to false to get different random behaviour every time.
- * 
- * @author David J. Barnes and Michael Kölling
- * @version 2016.02.29
- */
-public class Randomizer
-{
-    // The default seed for control of randomization.
-    private static final int SEED = 1111;
-    // A shared Random object, if required.
-    private static final Random rand = new Random(SEED);
-    // Determine whether a shared random generator is to be provided.
-    private static final boolean useShared = true;
-
-    /**
-     * Constructor for objects of class Randomizer
-     */
-    public Randomizer()
-    {
-    }
-
-    /**
-     * Provide a random generator.
-     * @return A random object.
-     */
-    public static Random getRandom()
-    {
-        if(useShared) {
-            return rand;
-        }
-        else {
-            return new Random();
-        }
-    }
-    
-    /**
-     * Reset the randomization.
-     * This will have no effect if randomization is not through
-     * a shared Random generator.
-     */
-    public static void reset()
-    {
-        if(useShared) {
-            rand.setSeed(SEED);
-        }
-    }
-}
+import java.util.Random;
+
+/**
+ * Provide control over the randomization of the simulation. By using the shared, fixed-seed
+ * randomizer, repeated runs will perform exactly the same (which helps with testing). Set
+ * 'useShared' to false to get different random behaviour every time.
+ *
+ * The shared randomizer draws from a master generator, unless the calling thread has bound
+ * a stream of its own, as each run of an ensemble does. Further streams are derived from the
+ * seed of one of these and a pair of keys, such as a step and a tile number, so work split
+ * between threads gets the same random numbers however many threads there are. Two families of generator are available: JDK, which gives
+ * the same numbers as java.util.Random, and XOROSHIRO, which is faster and of better quality.
+ *
+ * @author David J. Barnes and Michael Kölling
+ * @version 2016.02.29
+ */
+public class Randomizer
+{
+    // The generator family giving the same numbers as java.util.Random.
+    public static final String JDK = "jdk";
+    // The xoroshiro128++ generator family.
+    public static final String XOROSHIRO = "xoroshiro";
+    // The increment of the SplitMix64 sequence, used to space out derived seeds.
+    static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    // The default seed for control of randomization.
+    private static final int SEED = 1111;
+    // Determine whether a shared random generator is to be provided.
+    private static final boolean useShared = true;
+    // The family of generators in use.
+    private static String family = JDK;
+    // The seed in use.
+    private static long seed = SEED;
+    // The generator used by threads that have not bound a stream of their own.
+    private static SeededRandom master = newGenerator(family, seed);
+    // The stream bound to each thread, if any.
+    private static final ThreadLocal<SeededRandom> bound = new ThreadLocal<>();
+    // A shared Random object, drawing from the master generator or the thread's stream.
+    private static final Random rand = new RoutingRandom();
+
+    /**
+     * Constructor for objects of class Randomizer
+     */
+    public Randomizer()
+    {
+    }
+
+    /**
+     * Provide a random generator.
+     * @return A random object.
+     */
+    public static Random getRandom()
+    {
+        if(useShared) {
+            return rand;
+        }
+        else {
+            return new Random();
+        }
+    }
+
+    /**
+     * Reset the randomization of the calling thread, reseeding its
+     * stream, or the master generator, with the seed it was given.
+     * This will have no effect if randomization is not through
+     * a shared Random generator.
+     */
+    public static void reset()
+    {
+        if(useShared) {
+            SeededRandom generator = current();
+            generator.setSeed(generator.getSeed());
+        }
+    }
+
+    /**
+     * Choose the family of generators to use, and reset the master
+     * generator with the current seed.
+     * @param generatorFamily JDK or XOROSHIRO.
+     */
+    public static void setGenerator(String generatorFamily)
+    {
+        if(!JDK.equals(generatorFamily) && !XOROSHIRO.equals(generatorFamily)) {
+            throw new IllegalArgumentException("Unknown generator family: " + generatorFamily);
+        }
+        family = generatorFamily;
+        master = newGenerator(family, seed);
+    }
+
+    /**
+     * Choose the seed to use, and reset the master generator with it.
+     * @param newSeed The new seed.
+     */
+    public static void setSeed(long newSeed)
+    {
+        seed = newSeed;
+        master = newGenerator(family, seed);
+    }
+
+    /**
+     * @return The family of the generator the calling thread draws from.
+     */
+    public static String getGenerator()
+    {
+        return familyOf(current());
+    }
+
+    /**
+     * @return The seed of the generator the calling thread draws from.
+     */
+    public static long getSeed()
+    {
+        return current().getSeed();
+    }
+
+    /**
+     * Put the generator the calling thread draws from into a saved state.
+     * A thread with a stream of its own binds a new stream in that state,
+     * leaving the master generator alone; any other thread replaces the
+     * master generator.
+     * @param generatorFamily JDK or XOROSHIRO.
+     * @param generatorSeed The seed the generator was given.
+     * @param state The generator's state, as returned by getState.
+     */
+    public static void restore(String generatorFamily, long generatorSeed, long[] state)
+    {
+        SeededRandom generator = newGenerator(generatorFamily, generatorSeed);
+        generator.setState(state);
+        if(bound.get() != null) {
+            bound.set(generator);
+        }
+        else {
+            family = generatorFamily;
+            seed = generatorSeed;
+            master = generator;
+        }
+    }
+
+    /**
+     * Return the master generator, which is used by threads that have
+     * not bound a stream of their own.
+     * @return The master generator.
+     */
+    public static SeededRandom getMaster()
+    {
+        return master;
+    }
+
+    /**
+     * Create a new generator of the family in use.
+     * @param streamSeed The generator's seed, e.g. from streamSeed.
+     * @return The new generator.
+     */
+    public static SeededRandom newGenerator(long streamSeed)
+    {
+        return newGenerator(family, streamSeed);
+    }
+
+    /**
+     * Create a new generator of the same family as another.
+     * @param like The generator whose family to use.
+     * @param streamSeed The generator's seed, e.g. from streamSeed.
+     * @return The new generator.
+     */
+    public static SeededRandom newGenerator(SeededRandom like, long streamSeed)
+    {
+        return newGenerator(familyOf(like), streamSeed);
+    }
+
+    /**
+     * @param generator A generator.
+     * @return Its family, JDK or XOROSHIRO.
+     */
+    private static String familyOf(SeededRandom generator)
+    {
+        return generator instanceof XoroshiroRandom ? XOROSHIRO : JDK;
+    }
+
+    /**
+     * Create a new generator of the given family.
+     * @param generatorFamily JDK or XOROSHIRO.
+     * @param generatorSeed The generator's seed.
+     * @return The new generator.
+     */
+    private static SeededRandom newGenerator(String generatorFamily, long generatorSeed)
+    {
+        if(XOROSHIRO.equals(generatorFamily)) {
+            return new XoroshiroRandom(generatorSeed);
+        }
+        else {
+            return new LcgRandom(generatorSeed);
+        }
+    }
+
+    /**
+     * Derive the seed of an independent stream from the seed of another
+     * generator and two keys. The same seed and keys always give the
+     * same stream.
+     * @param root The generator to derive the stream from, e.g. the
+     *             one the thread stepping the simulation draws from.
+     * @param key1 The first key, e.g. a step number.
+     * @param key2 The second key, e.g. a tile number.
+     * @return The seed of the stream.
+     */
+    public static long streamSeed(SeededRandom root, long key1, long key2)
+    {
+        return mix(mix(root.getSeed() + GOLDEN_GAMMA * (key1 + 1)) + GOLDEN_GAMMA * (key2 + 1));
+    }
+
+    /**
+     * Make the shared randomizer draw from the given stream whenever it
+     * is used by the calling thread.
+     * @param stream The stream to draw from, or null to go back to the
+     *               master generator.
+     * @return The stream that was bound before, or null if there was none.
+     */
+    public static SeededRandom bind(SeededRandom stream)
+    {
+        SeededRandom previous = bound.get();
+        if(stream == null) {
+            bound.remove();
+        }
+        else {
+            bound.set(stream);
+        }
+        return previous;
+    }
+
+    /**
+     * The finalising function of the SplitMix64 generator, which turns
+     * consecutive inputs into well mixed, unrelated outputs.
+     * @param z The value to mix.
+     * @return The mixed value.
+     */
+    static long mix(long z)
+    {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Return the generator the calling thread draws from: its own stream
+     * if it has bound one, or the master generator. Drawing from it
+     * directly saves looking up the stream for every number in a long
+     * run of draws.
+     * @return The generator the calling thread should draw from.
+     */
+    static SeededRandom current()
+    {
+        SeededRandom stream = bound.get();
+        return stream != null ? stream : master;
+    }
+
+    /**
+     * The shared randomizer. Every draw is passed on to the calling
+     * thread's stream, or to the master generator.
+     */
+    private static class RoutingRandom extends Random
+    {
+        // Random is serializable.
+        private static final long serialVersionUID = 1L;
+
+        protected int next(int bits)
+        {
+            return current().nextBits(bits);
+        }
+
+        public int nextInt()
+        {
+            return current().nextInt();
+        }
+
+        public int nextInt(int bound)
+        {
+            return current().nextInt(bound);
+        }
+
+        public long nextLong()
+        {
+            return current().nextLong();
+        }
+
+        public boolean nextBoolean()
+        {
+            return current().nextBoolean();
+        }
+
+        public double nextDouble()
+        {
+            return current().nextDouble();
+        }
+
+        public float nextFloat()
+        {
+            return current().nextFloat();
+        }
+
+        public void setSeed(long seed)
+        {
+            // The shared randomizer is reseeded through Randomizer.
+        }
+    }
+}
@@ -0,0 +1,71 @@
+import java.util.Random;
+
+/**
+ * A random number generator whose whole state can be read and restored,
+ * so that a simulation can be saved and resumed exactly. Subclasses
+ * provide the underlying generator; unlike java.util.Random they are not
+ * thread-safe, and so avoid the cost of updating an atomic seed on every
+ * draw. Each thread should use its own generator.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public abstract class SeededRandom extends Random
+{
+    // Random is serializable.
+    private static final long serialVersionUID = 1L;
+
+    // The seed last given to the generator. Not initialised here, as
+    // setSeed is called from the superclass constructor.
+    private long seed;
+
+    /**
+     * Create a generator with the given seed.
+     * @param seed The initial seed.
+     */
+    public SeededRandom(long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * Record the seed. Subclasses reset their own state as well.
+     * @param seed The new seed.
+     */
+    public void setSeed(long seed)
+    {
+        this.seed = seed;
+    }
+
+    /**
+     * @return The seed last given to the generator, from which streams
+     *         derived from it are seeded.
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    /**
+     * Return the next pseudorandom bits from the generator.
+     * This is java.util.Random's next method, made callable from
+     * outside the class hierarchy.
+     * @param bits The number of random bits wanted, at most 32.
+     * @return An int whose low bits are random.
+     */
+    public int nextBits(int bits)
+    {
+        return next(bits);
+    }
+
+    /**
+     * Return a copy of the generator's internal state.
+     * @return The state, as an array of longs.
+     */
+    public abstract long[] getState();
+
+    /**
+     * Restore a state previously returned by getState.
+     * @param state The state to restore.
+     */
+    public abstract void setState(long[] state);
+}
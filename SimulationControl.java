@@ -0,0 +1,153 @@
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Lets a user pause, single-step and slow down a running simulation.
+ * The simulation asks for its turn before every step; the controls,
+ * such as the buttons of the graphical view, may be used from any
+ * thread. A control that is never touched lets the simulation run at
+ * full speed.
+ *
+ * The simulation also holds the control's step lock while it changes
+ * the field, so that another thread, such as the view when the user
+ * zooms, can look at the field between steps without waiting for one.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class SimulationControl
+{
+    // Whether the simulation is paused.
+    private boolean paused;
+    // The number of single steps requested while paused.
+    private int stepsRequested;
+    // The pause between steps, in milliseconds.
+    private int delay;
+    // Held by the simulation while it is in the middle of a step.
+    private final ReentrantLock stepLock;
+
+    /**
+     * Create a control that lets the simulation run at full speed.
+     */
+    public SimulationControl()
+    {
+        paused = false;
+        stepsRequested = 0;
+        delay = 0;
+        stepLock = new ReentrantLock();
+    }
+
+    /**
+     * Stop the simulation before its next step.
+     */
+    public synchronized void pause()
+    {
+        paused = true;
+    }
+
+    /**
+     * Let a paused simulation carry on.
+     */
+    public synchronized void resume()
+    {
+        paused = false;
+        stepsRequested = 0;
+        notifyAll();
+    }
+
+    /**
+     * Let a paused simulation take a single step.
+     */
+    public synchronized void step()
+    {
+        if(paused) {
+            stepsRequested++;
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return true if the simulation is paused.
+     */
+    public synchronized boolean isPaused()
+    {
+        return paused;
+    }
+
+    /**
+     * Set how long to wait between steps, to slow the simulation down
+     * enough to watch.
+     * @param delay The pause between steps in milliseconds, or 0 for none.
+     */
+    public synchronized void setDelay(int delay)
+    {
+        this.delay = Math.max(0, delay);
+    }
+
+    /**
+     * @return The pause between steps, in milliseconds.
+     */
+    public synchronized int getDelay()
+    {
+        return delay;
+    }
+
+    /**
+     * Wait until the simulation may take its next step: while it is
+     * paused, until it is resumed or a single step is requested, and
+     * then for the delay between steps.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void awaitTurn() throws InterruptedException
+    {
+        int wait;
+        synchronized(this) {
+            while(paused && stepsRequested == 0) {
+                wait();
+            }
+            if(paused) {
+                stepsRequested--;
+            }
+            wait = delay;
+        }
+        if(wait > 0) {
+            Thread.sleep(wait);
+        }
+    }
+
+    /**
+     * Mark the start of a change to the field, such as a step or a reset.
+     * Must be followed by endStep.
+     */
+    public void beginStep()
+    {
+        stepLock.lock();
+    }
+
+    /**
+     * Mark the end of a change to the field.
+     */
+    public void endStep()
+    {
+        stepLock.unlock();
+    }
+
+    /**
+     * Run a task on the calling thread if the simulation is between
+     * steps, holding off the next step until it is done. If a step is
+     * under way, the task is not run and the caller does not wait.
+     * @param task The task, which may look at the field.
+     * @return true if the task was run.
+     */
+    public boolean runBetweenSteps(Runnable task)
+    {
+        if(!stepLock.tryLock()) {
+            return false;
+        }
+        try {
+            task.run();
+            return true;
+        }
+        finally {
+            stepLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,455 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+
+/**
+ * Every number that sets the rules of a simulation: the characteristics
+ * of each species, how disease spreads, how krill grow and how often the
+ * weather changes. A simulation reads its rules from the parameters it
+ * was created with, so a single program can run many variations of a
+ * scenario, one after another or side by side. The values never change
+ * once created; with() gives a copy with one value changed.
+ *
+ * Parameters are loaded from a properties file. Any value not given
+ * keeps the default set in the class it belongs to. The keys are:
+ * <pre>
+ *   fox.breedingAge, fox.maxAge, fox.breedingProbability,
+ *   fox.maxLitterSize, fox.hungerCap, fox.nightMovingProbability,
+ *   fox.nightHuntingFoodLevel, fox.creationProbability,
+ *   fox.food.rabbit (and the same for the other species),
+ *   disease.infectedProbability, disease.deathProbability,
+ *   disease.matingSpread, disease.spreadProbability,
+ *   disease.rainSpreadProbability, disease.preyInfection,
+ *   predator.defaultFoodLevel,
+ *   krill.max, krill.growthRate, krill.starting, krill.growthProbability,
+ *   krill.rainGrowthProbability, krill.droughtGrowthProbability,
+ *   weather.rainProbability, weather.droughtProbability, weather.maxSteps
+ * </pre>
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class SimulationParameters
+{
+    // The parameters set in the classes of the simulation.
+    public static final SimulationParameters DEFAULTS = new SimulationParameters(new Properties());
+
+    // The values that differ from the defaults.
+    private final Properties values;
+    // The parameters of each species, indexed by species number.
+    private final SpeciesParameters[] species;
+    // The probability an animal becomes infected without contact.
+    private final double infectedProbability;
+    // Probability an animal will die if diseased.
+    private final double diseaseDeathProbability;
+    // Probability disease will spread when mating.
+    private final double matingDiseaseSpread;
+    // Probability that disease spreads between animals in normal weather, and when it is raining.
+    private final double diseaseSpreadProbability, rainDiseaseSpreadProbability;
+    // Chance a predator catches the disease from infected prey.
+    private final double diseasedPreyInfection;
+    // The food level of a newborn megalodon.
+    private final int defaultFoodLevel;
+    // The most krill a cell can hold, the amount they grow by, and the amount at the start.
+    private final int maxKrill, krillGrowthRate, startingKrill;
+    // The chance of krill growing in normal weather, in rain and in a drought.
+    private final double krillGrowthProbability, rainKrillGrowthProbability, droughtKrillGrowthProbability;
+    // The chance of rain or drought starting in normal weather.
+    private final double rainProbability, droughtProbability;
+    // The most steps rain or drought lasts for.
+    private final int maxWeatherSteps;
+
+    /**
+     * Create parameters from a set of values, keeping the defaults for
+     * any that are not given.
+     * @param values The values, keyed as described above.
+     * @throws IllegalArgumentException If a key is not recognised or a
+     *                                  value is not a number or is out
+     *                                  of range.
+     */
+    public SimulationParameters(Properties values)
+    {
+        this.values = new Properties();
+        this.values.putAll(values);
+        ValueReader reader = new ValueReader(values);
+
+        species = new SpeciesParameters[Species.COUNT];
+        for(int s = 0; s < Species.COUNT; s++) {
+            SpeciesParameters defaults = SpeciesParameters.getDefaults(s);
+            String prefix = getKey(s) + ".";
+            int[] food = new int[Species.COUNT];
+            for(int prey = 0; prey < Species.COUNT; prey++) {
+                food[prey] = reader.getInt(prefix + "food." + getKey(prey), defaults.getFoodValue(prey));
+            }
+            species[s] = new SpeciesParameters(
+                s,
+                reader.getInt(prefix + "breedingAge", defaults.getBreedingAge()),
+                reader.getInt(prefix + "maxAge", defaults.getMaxAge()),
+                reader.getDouble(prefix + "breedingProbability", defaults.getBreedingProbability()),
+                reader.getInt(prefix + "maxLitterSize", defaults.getMaxLitterSize()),
+                reader.getInt(prefix + "hungerCap", defaults.getHungerCap()),
+                reader.getDouble(prefix + "nightMovingProbability", defaults.getNightMovingProbability()),
+                reader.getInt(prefix + "nightHuntingFoodLevel", defaults.getNightHuntingFoodLevel()),
+                reader.getDouble(prefix + "creationProbability", defaults.getCreationProbability()),
+                food);
+        }
+
+        infectedProbability = reader.getProbability("disease.infectedProbability", Animal.INFECTED_PROBABILITY);
+        diseaseDeathProbability = reader.getProbability("disease.deathProbability",
+                                                        Animal.DISEASE_DEATH_PROBABILITY);
+        matingDiseaseSpread = reader.getProbability("disease.matingSpread", Animal.MATING_DISEASE_SPREAD);
+        diseaseSpreadProbability = reader.getProbability("disease.spreadProbability",
+                                                         Animal.DISEASE_SPREAD_PROBABILITY);
+        rainDiseaseSpreadProbability = reader.getProbability("disease.rainSpreadProbability",
+                                                             Animal.RAIN_DISEASE_SPREAD_PROBABILITY);
+        diseasedPreyInfection = reader.getProbability("disease.preyInfection", Predator.DISEASED_PREY_INFECTION);
+        defaultFoodLevel = reader.getInt("predator.defaultFoodLevel", Predator.DEFAULT_FOOD_LEVEL, 0);
+
+        maxKrill = reader.getInt("krill.max", KrillLayer.MAX_KRILL, 0);
+        // Lazy krill work out how many rounds of growth fill a cell, so they must grow.
+        krillGrowthRate = reader.getInt("krill.growthRate", KrillLayer.GROWTH_RATE, 1);
+        startingKrill = reader.getInt("krill.starting", KrillLayer.STARTING_NUM_OF_KRILL, 0);
+        if(startingKrill > maxKrill) {
+            throw new IllegalArgumentException("More than krill.max=" + maxKrill
+                                               + ": krill.starting=" + startingKrill);
+        }
+        krillGrowthProbability = reader.getProbability("krill.growthProbability", KrillLayer.GROWTH_PROBABILTY);
+        rainKrillGrowthProbability = reader.getProbability("krill.rainGrowthProbability",
+                                                           KrillLayer.RAIN_GROWTH_PROBABILTY);
+        droughtKrillGrowthProbability = reader.getProbability("krill.droughtGrowthProbability",
+                                                              KrillLayer.DROUGHT_GROWTH_PROBABILTY);
+
+        rainProbability = reader.getProbability("weather.rainProbability", Weather.RAIN_PROBABILITY);
+        droughtProbability = reader.getProbability("weather.droughtProbability", Weather.DROUGHT_PROBABILITY);
+        maxWeatherSteps = reader.getInt("weather.maxSteps", Weather.MAX_STEPS_WEATHER, 1);
+
+        reader.checkAllUsed();
+    }
+
+    /**
+     * Load parameters from a properties file.
+     * @param fileName The name of the file.
+     * @return The parameters.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If a key is not recognised or a
+     *                                  value is not a number or is out
+     *                                  of range.
+     */
+    public static SimulationParameters load(String fileName) throws IOException
+    {
+        Properties values = new Properties();
+        try(Reader in = Files.newBufferedReader(Paths.get(fileName), StandardCharsets.UTF_8)) {
+            values.load(in);
+        }
+        return new SimulationParameters(values);
+    }
+
+    /**
+     * Return a copy of these parameters with one value changed, e.g.
+     * for a point of a parameter sweep.
+     * @param key The key of the value to change.
+     * @param value The new value.
+     * @return The new parameters.
+     * @throws IllegalArgumentException If the key is not recognised or
+     *                                  the value is not a number or is
+     *                                  out of range.
+     */
+    public SimulationParameters with(String key, String value)
+    {
+        Properties changed = new Properties();
+        changed.putAll(values);
+        changed.setProperty(key, value);
+        return new SimulationParameters(changed);
+    }
+
+    /**
+     * Return the key used for a species, e.g. "fox".
+     * @param s The species number.
+     * @return The key.
+     */
+    public static String getKey(int s)
+    {
+        return Species.getName(s).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param s A species number.
+     * @return The parameters of the species.
+     */
+    public SpeciesParameters getSpecies(int s)
+    {
+        return species[s];
+    }
+
+    /**
+     * @return The probability an animal becomes infected without contact.
+     */
+    public double getInfectedProbability()
+    {
+        return infectedProbability;
+    }
+
+    /**
+     * @return The probability an infected animal dies in a step.
+     */
+    public double getDiseaseDeathProbability()
+    {
+        return diseaseDeathProbability;
+    }
+
+    /**
+     * @return The probability the disease spreads when animals mate.
+     */
+    public double getMatingDiseaseSpread()
+    {
+        return matingDiseaseSpread;
+    }
+
+    /**
+     * @return The probability the disease spreads between neighbours in
+     *         normal weather.
+     */
+    public double getDiseaseSpreadProbability()
+    {
+        return diseaseSpreadProbability;
+    }
+
+    /**
+     * @return The probability the disease spreads between neighbours
+     *         when it is raining.
+     */
+    public double getRainDiseaseSpreadProbability()
+    {
+        return rainDiseaseSpreadProbability;
+    }
+
+    /**
+     * @return The chance a predator catches the disease from infected prey.
+     */
+    public double getDiseasedPreyInfection()
+    {
+        return diseasedPreyInfection;
+    }
+
+    /**
+     * @return The food level of a newborn megalodon.
+     */
+    public int getDefaultFoodLevel()
+    {
+        return defaultFoodLevel;
+    }
+
+    /**
+     * @return The most krill a cell can hold.
+     */
+    public int getMaxKrill()
+    {
+        return maxKrill;
+    }
+
+    /**
+     * @return The amount krill grow by.
+     */
+    public int getKrillGrowthRate()
+    {
+        return krillGrowthRate;
+    }
+
+    /**
+     * @return The krill in each cell at the start.
+     */
+    public int getStartingKrill()
+    {
+        return startingKrill;
+    }
+
+    /**
+     * @return The chance of krill growing in normal weather.
+     */
+    public double getKrillGrowthProbability()
+    {
+        return krillGrowthProbability;
+    }
+
+    /**
+     * @return The chance of krill growing when it is raining.
+     */
+    public double getRainKrillGrowthProbability()
+    {
+        return rainKrillGrowthProbability;
+    }
+
+    /**
+     * @return The chance of krill growing in a drought.
+     */
+    public double getDroughtKrillGrowthProbability()
+    {
+        return droughtKrillGrowthProbability;
+    }
+
+    /**
+     * @return The chance of rain starting in normal weather.
+     */
+    public double getRainProbability()
+    {
+        return rainProbability;
+    }
+
+    /**
+     * @return The chance of a drought starting in normal weather.
+     */
+    public double getDroughtProbability()
+    {
+        return droughtProbability;
+    }
+
+    /**
+     * @return The most steps rain or drought lasts for.
+     */
+    public int getMaxWeatherSteps()
+    {
+        return maxWeatherSteps;
+    }
+
+    /**
+     * @return The values that differ from the defaults, as key=value pairs.
+     */
+    public String toString()
+    {
+        return values.toString();
+    }
+
+    /**
+     * Check that a value is no less than a minimum.
+     * @param key The key of the value, to name in the error.
+     * @param value The value.
+     * @param least The least it may be.
+     * @return The value.
+     * @throws IllegalArgumentException If it is less.
+     */
+    static int checkAtLeast(String key, int value, int least)
+    {
+        if(value < least) {
+            throw new IllegalArgumentException("Less than " + least + ": " + key + "=" + value);
+        }
+        return value;
+    }
+
+    /**
+     * Check that a value is a probability, from 0 to 1.
+     * @param key The key of the value, to name in the error.
+     * @param value The value.
+     * @return The value.
+     * @throws IllegalArgumentException If it is not.
+     */
+    static double checkProbability(String key, double value)
+    {
+        // Written so that NaN fails too.
+        if(!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException("Not a probability from 0 to 1: " + key + "=" + value);
+        }
+        return value;
+    }
+
+    /**
+     * Reads values from a set of properties, remembering which keys have
+     * been read so that unrecognised ones can be reported.
+     */
+    private static class ValueReader
+    {
+        private Properties values;
+        private Set<String> used;
+
+        /**
+         * @param values The values to read.
+         */
+        public ValueReader(Properties values)
+        {
+            this.values = values;
+            used = new HashSet<>();
+        }
+
+        /**
+         * @param key The key of the value.
+         * @param defaultValue The value if none is given.
+         * @return The value as an int.
+         */
+        public int getInt(String key, int defaultValue)
+        {
+            String value = get(key);
+            try {
+                return value == null ? defaultValue : Integer.parseInt(value);
+            }
+            catch(NumberFormatException e) {
+                throw new IllegalArgumentException("Not a whole number: " + key + "=" + value);
+            }
+        }
+
+        /**
+         * @param key The key of the value.
+         * @param defaultValue The value if none is given.
+         * @return The value as a double.
+         */
+        public double getDouble(String key, double defaultValue)
+        {
+            String value = get(key);
+            try {
+                return value == null ? defaultValue : Double.parseDouble(value);
+            }
+            catch(NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + key + "=" + value);
+            }
+        }
+
+        /**
+         * @param key The key of the value.
+         * @param defaultValue The value if none is given.
+         * @param least The least the value may be.
+         * @return The value as an int.
+         * @throws IllegalArgumentException If it is less than least.
+         */
+        public int getInt(String key, int defaultValue, int least)
+        {
+            return checkAtLeast(key, getInt(key, defaultValue), least);
+        }
+
+        /**
+         * @param key The key of the value.
+         * @param defaultValue The value if none is given.
+         * @return The value as a double.
+         * @throws IllegalArgumentException If it is not from 0 to 1.
+         */
+        public double getProbability(String key, double defaultValue)
+        {
+            return checkProbability(key, getDouble(key, defaultValue));
+        }
+
+        /**
+         * Check that every key given has been read.
+         * @throws IllegalArgumentException If one has not.
+         */
+        public void checkAllUsed()
+        {
+            for(String key : values.stringPropertyNames()) {
+                if(!used.contains(key)) {
+                    throw new IllegalArgumentException("Unknown parameter: " + key);
+                }
+            }
+        }
+
+        /**
+         * @return The value of a key, trimmed, or null if it is not given.
+         */
+        private String get(String key)
+        {
+            used.add(key);
+            String value = values.getProperty(key);
+            return value == null ? null : value.trim();
+        }
+    }
+}
@@ -0,0 +1,438 @@
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A snapshot of everything needed to resume a simulation exactly: the
+ * clock, the weather, the krill, every living animal and the state of
+ * the random number generator. The animals are held as parallel arrays
+ * of primitive values, in the order they act, so a snapshot can be
+ * written or read in a few bulk copies.
+ *
+ * A snapshot is saved in a compact binary format through a file channel,
+ * a block at a time, and read back by memory-mapping the file a part at
+ * a time, so a checkpoint of a field of any size never has to fit in a
+ * single buffer.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class SimulationState
+{
+    // Identifies a checkpoint file.
+    private static final int MAGIC = 0x4B52494C;
+    // The version of the file format.
+    private static final int VERSION = 1;
+    // The number of bytes sent to a file at a time.
+    private static final int BLOCK_SIZE = 1 << 20;
+    // The most bytes of a file mapped at a time.
+    private static final int MAP_SIZE = 1 << 30;
+    // Flags describing an animal.
+    static final byte MALE = 1;
+    static final byte INFECTED = 2;
+
+    // The size of the field.
+    int depth, width;
+    // The simulation clock.
+    int step, day, hour;
+    boolean isDay;
+    // The weather.
+    boolean raining, drought;
+    int weatherCount, weatherSteps;
+    // The random number generator: its family, seed and internal state.
+    String generator;
+    long seed;
+    long[] generatorState;
+    // The krill, and the history of growth rounds if they grow lazily.
+    boolean lazyKrill, bulkGrowth;
+    int[] krill;
+    int krillRounds;
+    int[] grownTo, rainyRounds, droughtRounds;
+    // The living animals, in the order they act.
+    int animalCount;
+    byte[] species;
+    int[] cells;
+    int[] ages;
+    int[] foodLevels;
+    byte[] flags;
+
+    /**
+     * Create an empty snapshot, to be filled in by the simulation.
+     */
+    public SimulationState()
+    {
+    }
+
+    /**
+     * Make room for the given number of animals, keeping the arrays if
+     * they are already big enough.
+     * @param count The number of animals.
+     */
+    void setAnimalCount(int count)
+    {
+        if(species == null || species.length < count) {
+            species = new byte[count];
+            cells = new int[count];
+            ages = new int[count];
+            foodLevels = new int[count];
+            flags = new byte[count];
+        }
+        animalCount = count;
+    }
+
+    /**
+     * @return The step the snapshot was taken at.
+     */
+    public int getStep()
+    {
+        return step;
+    }
+
+    /**
+     * @return The number of living animals in the snapshot.
+     */
+    public int getAnimalCount()
+    {
+        return animalCount;
+    }
+
+    /**
+     * Save the snapshot to a file, replacing anything already there.
+     * @param fileName The name of the file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(String fileName) throws IOException
+    {
+        write(fileName, newBuffer());
+    }
+
+    /**
+     * Save the snapshot to a file through a buffer made by newBuffer, so
+     * that one buffer can serve for every save.
+     * @param fileName The name of the file.
+     * @param buffer The buffer to write through.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(String fileName, ByteBuffer buffer) throws IOException
+    {
+        Path path = Paths.get(fileName);
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE,
+                                                   StandardOpenOption.WRITE,
+                                                   StandardOpenOption.TRUNCATE_EXISTING)) {
+            Output output = new Output(channel, buffer);
+            output.putInt(MAGIC);
+            output.putInt(VERSION);
+            output.putInt(depth);
+            output.putInt(width);
+            output.putInt(step);
+            output.putInt(day);
+            output.putInt(hour);
+            output.put(toByte(isDay));
+            output.put(toByte(raining));
+            output.put(toByte(drought));
+            output.putInt(weatherCount);
+            output.putInt(weatherSteps);
+            output.put(toByte(Randomizer.XOROSHIRO.equals(generator)));
+            output.putLong(seed);
+            output.putInt(generatorState.length);
+            for(long value : generatorState) {
+                output.putLong(value);
+            }
+            output.put(toByte(lazyKrill));
+            output.put(toByte(bulkGrowth));
+            output.putInts(krill, krill.length);
+            if(lazyKrill) {
+                output.putInt(krillRounds);
+                output.putInts(grownTo, grownTo.length);
+                output.putInts(rainyRounds, krillRounds + 1);
+                output.putInts(droughtRounds, krillRounds + 1);
+            }
+            output.putInt(animalCount);
+            output.putBytes(species, animalCount);
+            output.putBytes(flags, animalCount);
+            output.putInts(cells, animalCount);
+            output.putInts(ages, animalCount);
+            output.putInts(foodLevels, animalCount);
+            output.flush();
+        }
+    }
+
+    /**
+     * Make a buffer for writing snapshots through. It is direct, so only
+     * freed when the garbage collector gets round to it; keep one for
+     * repeated saves rather than making a new one each time.
+     * @return The buffer.
+     */
+    public static ByteBuffer newBuffer()
+    {
+        return ByteBuffer.allocateDirect(BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Read a snapshot saved by write.
+     * @param fileName The name of the file.
+     * @return The snapshot.
+     * @throws IOException If the file cannot be read or is not a checkpoint.
+     */
+    public static SimulationState read(String fileName) throws IOException
+    {
+        SimulationState state = new SimulationState();
+        try(FileChannel channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            Input input = new Input(channel);
+            if(channel.size() < 8 || input.getInt() != MAGIC) {
+                throw new IOException("Not a simulation checkpoint: " + fileName);
+            }
+            int version = input.getInt();
+            if(version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version + ": " + fileName);
+            }
+            state.depth = input.getInt();
+            state.width = input.getInt();
+            state.step = input.getInt();
+            state.day = input.getInt();
+            state.hour = input.getInt();
+            state.isDay = input.get() != 0;
+            state.raining = input.get() != 0;
+            state.drought = input.get() != 0;
+            state.weatherCount = input.getInt();
+            state.weatherSteps = input.getInt();
+            state.generator = input.get() != 0 ? Randomizer.XOROSHIRO : Randomizer.JDK;
+            state.seed = input.getLong();
+            state.generatorState = new long[input.getInt()];
+            for(int i = 0; i < state.generatorState.length; i++) {
+                state.generatorState[i] = input.getLong();
+            }
+            state.lazyKrill = input.get() != 0;
+            state.bulkGrowth = input.get() != 0;
+            state.krill = input.getInts(state.depth * state.width);
+            if(state.lazyKrill) {
+                state.krillRounds = input.getInt();
+                state.grownTo = input.getInts(state.krill.length);
+                state.rainyRounds = input.getInts(state.krillRounds + 1);
+                state.droughtRounds = input.getInts(state.krillRounds + 1);
+            }
+            state.setAnimalCount(input.getInt());
+            input.getBytes(state.species, state.animalCount);
+            input.getBytes(state.flags, state.animalCount);
+            state.cells = input.getInts(state.animalCount);
+            state.ages = input.getInts(state.animalCount);
+            state.foodLevels = input.getInts(state.animalCount);
+        }
+        catch(RuntimeException e) {
+            // A truncated or corrupt file runs off the end of the buffer.
+            throw new IOException("Damaged simulation checkpoint: " + fileName, e);
+        }
+        return state;
+    }
+
+    /**
+     * @return 1 for true, 0 for false.
+     */
+    private static byte toByte(boolean value)
+    {
+        return (byte) (value ? 1 : 0);
+    }
+
+    /**
+     * Writes a checkpoint file through a buffer of BLOCK_SIZE bytes,
+     * sending it to the file each time it fills. A checkpoint of a large
+     * field can be bigger than any one buffer can hold.
+     */
+    private static class Output
+    {
+        // The file being written.
+        private final FileChannel channel;
+        // The bytes not yet sent to the file.
+        private final ByteBuffer buffer;
+
+        /**
+         * @param channel The file to write.
+         * @param buffer The buffer to write through, made by newBuffer.
+         */
+        Output(FileChannel channel, ByteBuffer buffer)
+        {
+            this.channel = channel;
+            this.buffer = buffer;
+            buffer.clear();
+        }
+
+        void put(byte value) throws IOException
+        {
+            room(1);
+            buffer.put(value);
+        }
+
+        void putInt(int value) throws IOException
+        {
+            room(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException
+        {
+            room(8);
+            buffer.putLong(value);
+        }
+
+        /**
+         * Write the first values of an array.
+         * @param values The values.
+         * @param count How many to write.
+         */
+        void putBytes(byte[] values, int count) throws IOException
+        {
+            for(int done = 0; done < count; ) {
+                room(1);
+                int n = Math.min(count - done, buffer.remaining());
+                buffer.put(values, done, n);
+                done += n;
+            }
+        }
+
+        /**
+         * Write the first values of an array.
+         * @param values The values.
+         * @param count How many to write.
+         */
+        void putInts(int[] values, int count) throws IOException
+        {
+            for(int done = 0; done < count; ) {
+                room(4);
+                int n = Math.min(count - done, buffer.remaining() / 4);
+                buffer.asIntBuffer().put(values, done, n);
+                buffer.position(buffer.position() + 4 * n);
+                done += n;
+            }
+        }
+
+        /**
+         * Send the buffer to the file if it has less than the given room left.
+         * @param bytes The number of bytes about to be put in the buffer.
+         */
+        private void room(int bytes) throws IOException
+        {
+            if(buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+
+        /**
+         * Send everything in the buffer to the file.
+         */
+        void flush() throws IOException
+        {
+            buffer.flip();
+            while(buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * Reads a checkpoint file through a series of mappings of up to
+     * MAP_SIZE bytes each, as a buffer can hold at most 2GB.
+     */
+    private static class Input
+    {
+        // The file being read.
+        private final FileChannel channel;
+        // The part of the file mapped at present.
+        private MappedByteBuffer buffer;
+        // The position in the file of the start of that part.
+        private long start;
+
+        /**
+         * @param channel The file to read.
+         */
+        Input(FileChannel channel) throws IOException
+        {
+            this.channel = channel;
+            map(0);
+        }
+
+        byte get() throws IOException
+        {
+            need(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException
+        {
+            need(4);
+            return buffer.getInt();
+        }
+
+        long getLong() throws IOException
+        {
+            need(8);
+            return buffer.getLong();
+        }
+
+        /**
+         * Read values into the start of an array.
+         * @param values The array to fill.
+         * @param count How many values to read.
+         */
+        void getBytes(byte[] values, int count) throws IOException
+        {
+            for(int done = 0; done < count; ) {
+                need(1);
+                int n = Math.min(count - done, buffer.remaining());
+                buffer.get(values, done, n);
+                done += n;
+            }
+        }
+
+        /**
+         * Read an array of ints.
+         * @param count How many values to read.
+         * @return The values.
+         */
+        int[] getInts(int count) throws IOException
+        {
+            int[] values = new int[count];
+            for(int done = 0; done < count; ) {
+                need(4);
+                int n = Math.min(count - done, buffer.remaining() / 4);
+                buffer.asIntBuffer().get(values, done, n);
+                buffer.position(buffer.position() + 4 * n);
+                done += n;
+            }
+            return values;
+        }
+
+        /**
+         * Map the next part of the file if the present one has fewer than
+         * the given number of bytes left.
+         * @param bytes The number of bytes about to be read.
+         * @throws BufferUnderflowException If the file ends first.
+         */
+        private void need(int bytes) throws IOException
+        {
+            if(buffer.remaining() < bytes) {
+                map(start + buffer.position());
+                if(buffer.remaining() < bytes) {
+                    throw new BufferUnderflowException();
+                }
+            }
+        }
+
+        /**
+         * Map the part of the file from a position on.
+         * @param position The position in the file.
+         */
+        private void map(long position) throws IOException
+        {
+            start = position;
+            long size = Math.min(MAP_SIZE, channel.size() - position);
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+}
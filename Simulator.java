@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.util.Random;
 import java.util.List;
 import java.util.ArrayList;
@@ -20,17 +21,17 @@ public class Simulator
     // The default depth of the grid.
     private static final int DEFAULT_DEPTH = 130;
     // The probability that a fox will be created in any given grid position.
-    private static final double FOX_CREATION_PROBABILITY = 0.07;
+    static final double FOX_CREATION_PROBABILITY = 0.07;
     // The probability that a rabbit will be created in any given grid position.
-    private static final double RABBIT_CREATION_PROBABILITY = 0.35;
+    static final double RABBIT_CREATION_PROBABILITY = 0.35;
     
-    private static final double MEGALODON_CREATION_PROBABILITY = 0.03;
+    static final double MEGALODON_CREATION_PROBABILITY = 0.03;
     
     // The probability that a rabbit will be created in any given grid position.
-    private static final double JELLYFISH_CREATION_PROBABILITY = 0.001;
+    static final double JELLYFISH_CREATION_PROBABILITY = 0.001;
     
     // The probability that a rabbit will be created in any given grid position.
-    private static final double WHALE_CREATION_PROBABILITY = 0.055;
+    static final double WHALE_CREATION_PROBABILITY = 0.055;
     
     private static final int STEPS_IN_DAY = 24;
 
@@ -40,8 +41,17 @@ public class Simulator
     private Field field;
     // The current step of the simulation.
     private int step;
-    // A graphical view of the simulation.
-    private SimulatorView view;
+    // Observers told about each completed step, e.g. the graphical view.
+    private List<StepObserver> observers;
+    // Makes the animals act on several threads, or null to use just one.
+    private ParallelStepper stepper;
+    // Spreads disease once per step, before the animals act.
+    private Epidemic epidemic;
+    // Whether prey rest through the night without acting, where nothing
+    // else needs them to.
+    private boolean restingPrey;
+    // Lets the user pause, single-step and slow down the simulation.
+    private SimulationControl control;
     
     private int day;
     
@@ -56,11 +66,39 @@ public class Simulator
     }
     
     /**
-     * Create a simulation field with the given size.
+     * Create a simulation field with the given size, shown in a
+     * graphical view.
      * @param depth Depth of the field. Must be greater than zero.
      * @param width Width of the field. Must be greater than zero.
      */
     public Simulator(int depth, int width)
+    {
+        this(depth, width, true);
+    }
+    
+    /**
+     * Create a simulation field with the given size.
+     * A headless simulation never creates a view, so it can run on
+     * machines without a display. Observers may still be added.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param graphical Whether to show the simulation in a window.
+     */
+    public Simulator(int depth, int width, boolean graphical)
+    {
+        this(depth, width, graphical, SimulationParameters.DEFAULTS);
+    }
+    
+    /**
+     * Create a simulation field with the given size, whose animals,
+     * krill and weather follow the given parameters rather than the
+     * defaults.
+     * @param depth Depth of the field. Must be greater than zero.
+     * @param width Width of the field. Must be greater than zero.
+     * @param graphical Whether to show the simulation in a window.
+     * @param parameters The parameters of the simulation.
+     */
+    public Simulator(int depth, int width, boolean graphical, SimulationParameters parameters)
     {
         if(width <= 0 || depth <= 0) {
             System.out.println("The dimensions must be greater than zero.");
@@ -70,18 +108,152 @@ public class Simulator
         }
         
         animals = new ArrayList<>();
-        field = new Field(depth, width);
+        field = new Field(depth, width, parameters);
+        epidemic = new Epidemic();
+        restingPrey = true;
+        observers = new ArrayList<>();
+        control = new SimulationControl();
 
-        // Create a view of the state of each location in the field.
-        view = new SimulatorView(depth, width);
+        if(graphical) {
+            addObserver(createView(depth, width, control));
+        }
+                
+        // Setup a valid starting point.
+        reset();
+    }
+    
+    /**
+     * Create a view of the state of each location in the field.
+     * Kept separate so that headless simulations never load Swing.
+     * The view draws on its own thread, with controls for the simulation.
+     * @param depth Depth of the field.
+     * @param width Width of the field.
+     * @param control The control for the view's buttons to use.
+     * @return The view, ready to be added as an observer.
+     */
+    private static SimulatorView createView(int depth, int width, SimulationControl control)
+    {
+        SimulatorView view = new SimulatorView(depth, width);
         view.setColor(Rabbit.class, Color.ORANGE);
         view.setColor(Fox.class, Color.BLUE);
         view.setColor(Megalodon.class, Color.RED);
         view.setColor(Jellyfish.class, Color.CYAN);
         view.setColor(Whale.class, Color.MAGENTA);
-                
-        // Setup a valid starting point.
-        reset();
+        view.setControl(control);
+        view.setPipelined(true);
+        return view;
+    }
+    
+    /**
+     * Add an observer to be told about every completed step.
+     * The observer is shown the current state straight away.
+     * @param observer The observer to add.
+     */
+    public void addObserver(StepObserver observer)
+    {
+        observers.add(observer);
+        observer.stepCompleted(step, day, field);
+    }
+    
+    /**
+     * Stop telling an observer about completed steps.
+     * @param observer The observer to remove.
+     */
+    public void removeObserver(StepObserver observer)
+    {
+        observers.remove(observer);
+    }
+    
+    /**
+     * Choose how many threads the animals act on. With one or more,
+     * the field is split into tiles that are processed concurrently,
+     * giving the same results whatever the number of threads. With
+     * none, the animals act one after another in a single list.
+     * @param threads The number of threads to use, or 0 for none.
+     */
+    public void setThreads(int threads)
+    {
+        if(stepper != null) {
+            stepper.shutdown();
+            stepper = null;
+        }
+        if(threads > 0) {
+            stepper = new ParallelStepper(threads);
+        }
+    }
+    
+    /**
+     * Choose whether the krill grow lazily. Lazy krill only do work
+     * where they are grazed, which makes steps on large, sparsely
+     * populated fields much cheaper.
+     * @param lazy true for lazy growth.
+     */
+    public void setLazyKrill(boolean lazy)
+    {
+        field.setLazyKrill(lazy);
+    }
+    
+    /**
+     * Choose whether krill growing eagerly grow by the bulk kernel, or
+     * cell by cell, which repeats the runs of earlier versions exactly.
+     * Turning it off also makes the field populate itself by drawing for
+     * every cell, as earlier versions did, from the next reset on.
+     * Unlike the choices below, it is saved in checkpoints.
+     * @param bulk true for the bulk kernel.
+     */
+    public void setBulkGrowth(boolean bulk)
+    {
+        field.setBulkGrowth(bulk);
+    }
+    
+    /**
+     * Choose whether disease spreads in a phase of its own at the start
+     * of each step, or as each animal acts, which repeats the runs of
+     * earlier versions exactly. The choice is not saved in checkpoints.
+     * @param batched true for a phase of its own.
+     */
+    public void setBatchedEpidemic(boolean batched)
+    {
+        field.setBatchedEpidemic(batched);
+    }
+    
+    /**
+     * Choose whether prey rest through the night without acting. At
+     * night a prey animal only waits and, if infected, may die of the
+     * disease; when disease spreads in a phase of its own and deaths
+     * from age and hunger are scheduled, those deaths are all that is
+     * left, and they are drawn together before the other animals act.
+     * Turning it off makes every prey animal act at night as in earlier
+     * versions. The choice is not saved in checkpoints.
+     * @param resting true to let prey rest.
+     */
+    public void setRestingPrey(boolean resting)
+    {
+        restingPrey = resting;
+    }
+    
+    /**
+     * Choose whether animals die of old age and hunger at the start of
+     * the step they are due, or each on its own turn, which repeats the
+     * runs of earlier versions exactly. The choice is not saved in
+     * checkpoints.
+     * @param scheduled true for deaths at the start of the step.
+     */
+    public void setScheduledDeaths(boolean scheduled)
+    {
+        LifecycleScheduler lifecycle = field.getLifecycle();
+        lifecycle.setScheduled(scheduled);
+        lifecycle.scheduleAll(animals);
+    }
+    
+    /**
+     * Return the control used to pause, single-step or slow down the
+     * simulation while it runs.
+     * @return The simulation's control.
+     */
+    public SimulationControl getControl()
+    {
+        return control;
     }
     
     /**
@@ -95,46 +267,101 @@ public class Simulator
     
     /**
      * Run the simulation from its current state for the given number of steps.
-     * Stop before the given number of steps if it ceases to be viable.
+     * Stop before the given number of steps if it ceases to be viable,
+     * or if the thread is interrupted. Before each step, wait for the
+     * control to allow it.
      * @param numSteps The number of steps to run for.
      */
     public void simulate(int numSteps)
     {
-        for(int step = 1; step <= numSteps && view.isViable(field); step++) {
+        for(int step = 1; step <= numSteps && isViable(); step++) {
+            try {
+                control.awaitTurn();
+            }
+            catch(InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
             simulateOneStep();
             //delay(10);   // uncomment this to run more slowly            
         }
     }
     
+    /**
+     * Determine whether the simulation should continue to run.
+     * @return true If there is more than one species alive.
+     */
+    public boolean isViable()
+    {
+        return field.getStats().isViable();
+    }
+    
     /**
      * Run the simulation from its current state for a single step.
      * Iterate over the whole field updating the state of each
      * animal.
      */
     public void simulateOneStep()
+    {
+        control.beginStep();
+        try {
+            actOneStep();
+        }
+        finally {
+            control.endStep();
+        }
+    }
+    
+    /**
+     * Carry out a step: update the time and weather, spread disease,
+     * let every animal act, grow the krill and tell the observers.
+     */
+    private void actOneStep()
     {
         step++;
         hour++;
         incrementDay();
         checkTimeOfDay();
+        // Animals that die of old age or hunger on this step go first.
+        field.getLifecycle().advance(step);
         field.updateWeather(); // May cause a change in weather
-        
+        // Prey can only rest once nothing else needs them to act.
+        boolean preyResting = restingPrey && !field.getIsDay() && field.isBatchedEpidemic()
+                              && field.getLifecycle().isScheduled();
+        // Everything that follows from the time and weather, for the whole step.
+        Environment environment = new Environment(step, day, field.getIsDay(),
+                                                  field.getWeather(), field.getParameters(),
+                                                  preyResting);
+        if(field.isBatchedEpidemic()) {
+            epidemic.spread(field, environment);
+        }
+        if(preyResting) {
+            epidemic.killRestingPrey(field);
+        }
 
         // Provide space for newborn animals.
         List<Animal> newAnimals = new ArrayList<>();        
         // Let all animals act.
-        for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
-            Animal animal = it.next();
-            animal.act(newAnimals);
-            if(! animal.isAlive()) {
-                it.remove();
+        if(stepper != null) {
+            stepper.actAll(animals, field, newAnimals, environment);
+        }
+        else {
+            for(Iterator<Animal> it = animals.iterator(); it.hasNext(); ) {
+                Animal animal = it.next();
+                if(!(preyResting && animal instanceof Prey)) {
+                    animal.act(environment, newAnimals);
+                }
+                if(! animal.isAlive()) {
+                    it.remove();
+                }
             }
         }
                
         // Add the newly born foxes and rabbits to the main lists.
         animals.addAll(newAnimals);        
+        field.getLifecycle().scheduleAll(newAnimals);
         // Grows the krill in each grid sqaure
-        field.growKrill();
+        field.growKrill(environment);
                 
         updateView();
     }    
@@ -156,42 +383,197 @@ public class Simulator
      */
     private void checkTimeOfDay()
     {
-        int time = hour % STEPS_IN_DAY;
-        if ((time >= 21 && time <= 24) || (time >=0 && time <= 5)){
-            if (field.getIsDay()){
-               field.toggleDay(); 
-            }            
-        }
-        else if (time >= 6 && time <= 20) {
-            if (!field.getIsDay()) {
-                field.toggleDay();
-            }
-        } 
+        if (field.getIsDay() != Environment.isDaytime(hour)) {
+            field.toggleDay();
+        }
     }
     
     /**
      * Reset the simulation to a starting position.
      */
     public void reset()
+    {
+        control.beginStep();
+        try {
+            restart();
+        }
+        finally {
+            control.endStep();
+        }
+    }
+    
+    /**
+     * Put the simulation back at step 0 with a newly populated field,
+     * and show it to the observers.
+     */
+    private void restart()
     {
         step = 0;
         day = 1;
         hour = 6;
         animals.clear();
+        field.getLifecycle().reset(step, hour);
         populate();
+        field.getLifecycle().scheduleAll(animals);
         checkTimeOfDay();
         
-        // Show the starting state in the view.
+        // Show the starting state to the observers.
         updateView();
     }
     
     /**
-     * Shows the most recent changes in the view
+     * Save the whole state of the simulation to a file, so that it can
+     * be resumed later exactly where it left off.
+     * @param fileName The name of the file to write.
+     * @throws IOException If the file cannot be written.
+     */
+    public void saveCheckpoint(String fileName) throws IOException
+    {
+        captureState().write(fileName);
+    }
+    
+    /**
+     * Resume a simulation saved by saveCheckpoint. The simulation then
+     * carries on exactly as the saved one would have.
+     * @param fileName The name of the file to read.
+     * @throws IOException If the file cannot be read.
+     */
+    public void loadCheckpoint(String fileName) throws IOException
+    {
+        restoreState(SimulationState.read(fileName));
+    }
+    
+    /**
+     * Take a snapshot of the whole state of the simulation.
+     * @return The snapshot.
+     */
+    public SimulationState captureState()
+    {
+        SimulationState state = new SimulationState();
+        captureState(state);
+        return state;
+    }
+    
+    /**
+     * Take a snapshot of the whole state of the simulation, reusing the
+     * arrays of an earlier snapshot where they are big enough.
+     * @param state The snapshot to fill in.
+     */
+    public void captureState(SimulationState state)
+    {
+        state.step = step;
+        state.day = day;
+        state.hour = hour;
+        field.saveTo(state);
+        
+        int count = 0;
+        for(Animal animal : animals) {
+            if(animal.isAlive()) {
+                count++;
+            }
+        }
+        state.setAnimalCount(count);
+        int index = 0;
+        for(Animal animal : animals) {
+            // Dead animals are left in the list until their next turn, but do nothing.
+            if(animal.isAlive()) {
+                state.species[index] = (byte) animal.getSpecies();
+                state.cells[index] = animal.getCell();
+                state.ages[index] = animal.getAge();
+                state.foodLevels[index] = animal.getFoodLevel();
+                state.flags[index] = (byte) ((animal.isMale() ? SimulationState.MALE : 0)
+                                             | (animal.isInfected() ? SimulationState.INFECTED : 0));
+                index++;
+            }
+        }
+        
+        SeededRandom generator = Randomizer.current();
+        state.generator = Randomizer.getGenerator();
+        state.seed = generator.getSeed();
+        state.generatorState = generator.getState();
+    }
+    
+    /**
+     * Put the simulation back into the state of a snapshot. The random
+     * number generator is restored last, so creating the animals does
+     * not disturb it.
+     * @param state The snapshot to restore. It must be of a field of
+     *              the same size as this one.
+     */
+    public void restoreState(SimulationState state)
+    {
+        if(state.depth != field.getDepth() || state.width != field.getWidth()) {
+            throw new IllegalArgumentException("The saved field is " + state.depth + "x" + state.width
+                                               + ", not " + field.getDepth() + "x" + field.getWidth());
+        }
+        control.beginStep();
+        try {
+            restoreAnimals(state);
+        }
+        finally {
+            control.endStep();
+        }
+    }
+    
+    /**
+     * Restore the time, field, animals and random number generator of a
+     * snapshot of a field the size of this one, and show the result.
+     * @param state The snapshot to restore.
+     */
+    private void restoreAnimals(SimulationState state)
+    {
+        step = state.step;
+        day = state.day;
+        hour = state.hour;
+        field.loadFrom(state);
+        field.getLifecycle().reset(step, hour);
+        
+        animals.clear();
+        for(int i = 0; i < state.animalCount; i++) {
+            Animal animal = createAnimal(state.species[i], state.cells[i]);
+            animal.restore((state.flags[i] & SimulationState.MALE) != 0,
+                           (state.flags[i] & SimulationState.INFECTED) != 0,
+                           state.ages[i], state.foodLevels[i]);
+            animals.add(animal);
+        }
+        field.getLifecycle().scheduleAll(animals);
+        
+        Randomizer.restore(state.generator, state.seed, state.generatorState);
+        updateView();
+    }
+    
+    /**
+     * Create a new born animal of the given species.
+     * @param species One of the species numbers in Species.
+     * @param cell The index of the cell to put the animal in.
+     * @return The animal.
+     */
+    private Animal createAnimal(int species, int cell)
+    {
+        switch(species) {
+            case Species.FOX:
+                return new Fox(false, field, cell);
+            case Species.RABBIT:
+                return new Rabbit(false, field, cell);
+            case Species.MEGALODON:
+                return new Megalodon(false, field, cell);
+            case Species.WHALE:
+                return new Whale(false, field, cell);
+            case Species.JELLYFISH:
+                return new Jellyfish(false, field, cell);
+            default:
+                throw new IllegalArgumentException("Unknown species: " + species);
+        }
+    }
+    
+    /**
+     * Tells every observer about the most recent changes
      */
     private void updateView()
     {
-        String currentWeather = field.getWeather().getCurrentWeatherString();
-        view.showStatus(step, field, day, currentWeather);
+        for(StepObserver observer : observers) {
+            observer.stepCompleted(step, day, field);
+        }
     }
     
     /**
@@ -201,34 +583,45 @@ public class Simulator
     private void populate()
     {
         Random rand = Randomizer.getRandom();
+        SimulationParameters parameters = field.getParameters();
+        double foxProbability = parameters.getSpecies(Species.FOX).getCreationProbability();
+        double rabbitProbability = parameters.getSpecies(Species.RABBIT).getCreationProbability();
+        double megalodonProbability = parameters.getSpecies(Species.MEGALODON).getCreationProbability();
+        double whaleProbability = parameters.getSpecies(Species.WHALE).getCreationProbability();
         field.clear();
         field.resetKrill();
+        double jellyfishProbability = parameters.getSpecies(Species.JELLYFISH).getCreationProbability();
+        // Jellyfish are rare, so rather than drawing for every cell that
+        // reaches them, count down the cells to the next one. Earlier
+        // versions drew for every cell, so that is kept for when krill
+        // grow cell by cell, which repeats their runs.
+        boolean skipping = field.isBulkGrowth();
+        GeometricSkip jellyfishSkip = new GeometricSkip(jellyfishProbability);
+        int untilJellyfish = skipping ? jellyfishSkip.next(rand) : 0;
         for(int row = 0; row < field.getDepth(); row++) {
             for(int col = 0; col < field.getWidth(); col++) {
-                if(rand.nextDouble() <= FOX_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Fox fox = new Fox(true, field, location);
+                if(rand.nextDouble() <= foxProbability) {
+                    Fox fox = new Fox(true, field, field.getCell(row, col));
                     animals.add(fox);
                 }
-                else if(rand.nextDouble() <= RABBIT_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Rabbit rabbit = new Rabbit(true, field, location);
+                else if(rand.nextDouble() <= rabbitProbability) {
+                    Rabbit rabbit = new Rabbit(true, field, field.getCell(row, col));
                     animals.add(rabbit);
                 }
-                else if(rand.nextDouble() <= MEGALODON_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Megalodon megalodon = new Megalodon(true, field, location);
+                else if(rand.nextDouble() <= megalodonProbability) {
+                    Megalodon megalodon = new Megalodon(true, field, field.getCell(row, col));
                     animals.add(megalodon);
                 }
-                else if(rand.nextDouble() <= WHALE_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Whale whale = new Whale(true, field, location);
+                else if(rand.nextDouble() <= whaleProbability) {
+                    Whale whale = new Whale(true, field, field.getCell(row, col));
                     animals.add(whale);
                 }
-                else if(rand.nextDouble() <= JELLYFISH_CREATION_PROBABILITY) {
-                    Location location = new Location(row, col);
-                    Jellyfish jellyfish = new Jellyfish(true, field, location);
+                else if(skipping ? untilJellyfish-- == 0 : rand.nextDouble() <= jellyfishProbability) {
+                    Jellyfish jellyfish = new Jellyfish(true, field, field.getCell(row, col));
                     animals.add(jellyfish);
+                    if(skipping) {
+                        untilJellyfish = jellyfishSkip.next(rand);
+                    }
                 }
                 // else leave the location empty.
             }
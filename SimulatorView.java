@@ -1,38 +1,96 @@
 import java.awt.*;
 import java.awt.event.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import javax.swing.*;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * A graphical view of the simulation grid.
- * The view displays a colored rectangle for each location 
+ * The view displays a colored rectangle for each location
  * representing its contents. It uses a default background color.
  * Colors for each type of species can be defined using the
  * setColor method.
- * 
+ *
+ * The view shows a viewport onto the field, which can be zoomed with
+ * the mouse wheel and moved by dragging, so fields far larger than the
+ * screen can be watched. Only the cells inside the viewport are looked
+ * at. Zoomed out, each pixel stands for several cells: up to a tile of
+ * the field a single cell is sampled, and beyond that the view uses the
+ * field's per-tile counts to show the most common species, paler where
+ * the animals are sparse, without looking at individual cells at all.
+ *
+ * The view writes pixels straight into the array behind its image,
+ * looking each cell's color up in a table by species and infection,
+ * and only touches the parts of the viewport whose color has changed
+ * since the last step.
+ *
+ * In pipelined mode, drawing is taken off the simulation's thread. At
+ * the end of each step the simulation only copies the color of every
+ * part of the viewport into a frame and publishes it. A timer on the
+ * Swing event thread draws the latest frame at no more than
+ * FRAMES_PER_SECOND, skipping any published in between, so the
+ * simulation runs at full speed and all drawing happens on the event
+ * thread as Swing requires. Three frames are passed around so neither
+ * side ever waits: one being filled, one published, and one being drawn.
+ *
+ * The view can also be made offscreen, without a window, so that its
+ * drawing can be measured even where there is no display. It then draws
+ * into its image at the size the window would have had.
+ *
  * @author Mohammad Talal Hassan and Luke Kensik
  * @version 2016.02.29
  */
-public class SimulatorView extends JFrame
+public class SimulatorView implements StepObserver
 {
     // Colors used for empty locations.
     private static final Color EMPTY_COLOR = Color.white;
 
     // Color used for objects that have no defined color.
     private static final Color UNKNOWN_COLOR = Color.gray;
+    // Color used beyond the edges of the field.
+    private static final Color OUTSIDE_COLOR = Color.lightGray;
+    // The most frames drawn per second in pipelined mode.
+    private static final int FRAMES_PER_SECOND = 30;
+    // The longest pause between steps the speed slider offers, in milliseconds.
+    private static final int MAX_DELAY = 250;
 
     private final String STEP_PREFIX = "Step: ";
     private final String DAY_PREFIX = "Day: ";
     private final String WEATHER_PREFIX = "Weather: ";
     private final String POPULATION_PREFIX = "Population: ";
+    // The window showing the view, or null if it is drawn offscreen.
+    private JFrame window;
     private JLabel stepLabel, population, infoLabel;
     private FieldView fieldView;
-    
+    private JPanel statusPane;
+
     // A map for storing colors for participants in the simulation
     private Map<Class, Color> colors;
-    // A statistics object computing and storing simulation information
-    private FieldStats stats;
+    // The RGB value shown for each species, healthy and infected,
+    // indexed by species * 2 + infected.
+    private int[] palette;
+    // The part of the field shown. Replaced on the event thread.
+    private volatile Viewport viewport;
+    // The control of the simulation, if the view has been given one.
+    private SimulationControl control;
+    // The field, step and day last shown, to redraw between steps.
+    private Field lastField;
+    private int lastStep, lastDay;
+    // The color of each part of the viewport, when drawn without a pipeline.
+    private int[] units;
+    // Whether steps are drawn on the event thread rather than the simulation's.
+    private volatile boolean pipelined;
+    // The frame the simulation fills next, the latest published, and the one shown.
+    private Frame back, front;
+    private AtomicReference<Frame> latest;
+    // The number of frames published.
+    private long published;
+    // Draws the latest frame in pipelined mode.
+    private Timer timer;
 
     /**
      * Create a view of the given width and height.
@@ -41,30 +99,56 @@ public class SimulatorView extends JFrame
      */
     public SimulatorView(int height, int width)
     {
-        stats = new FieldStats();
+        this(height, width, true);
+    }
+
+    /**
+     * Create a view of the given width and height, in a window or offscreen.
+     * @param height The simulation's height.
+     * @param width  The simulation's width.
+     * @param onscreen false to draw without ever opening a window.
+     */
+    SimulatorView(int height, int width, boolean onscreen)
+    {
         colors = new LinkedHashMap<>();
+        palette = new int[2 * Species.COUNT];
+        updatePalette();
+        units = new int[0];
 
-        setTitle("Fox, Rabbit, Megalodon, Whale, and Jellyfish Simulation");
         stepLabel = new JLabel(STEP_PREFIX, JLabel.CENTER);
         infoLabel = new JLabel("  ", JLabel.CENTER);
         population = new JLabel(POPULATION_PREFIX, JLabel.CENTER);
-        
-        setLocation(100, 50);
-        
+
         fieldView = new FieldView(height, width);
+        viewport = fieldView.getInitialViewport();
+
+        Container contents;
+        if(onscreen) {
+            window = new JFrame("Fox, Rabbit, Megalodon, Whale, and Jellyfish Simulation");
+            window.setLocation(100, 50);
+            contents = window.getContentPane();
+        }
+        else {
+            contents = new JPanel(new BorderLayout());
+        }
 
-        Container contents = getContentPane();
-        
         JPanel infoPane = new JPanel(new BorderLayout());
             infoPane.add(stepLabel, BorderLayout.WEST);
             infoPane.add(infoLabel, BorderLayout.CENTER);
         contents.add(infoPane, BorderLayout.NORTH);
         contents.add(fieldView, BorderLayout.CENTER);
-        contents.add(population, BorderLayout.SOUTH);
-        pack();
-        setVisible(true);
+        statusPane = new JPanel(new BorderLayout());
+            statusPane.add(population, BorderLayout.CENTER);
+        contents.add(statusPane, BorderLayout.SOUTH);
+        if(window != null) {
+            window.pack();
+            window.setVisible(true);
+        }
+        else {
+            fieldView.setSize(fieldView.getPreferredSize());
+        }
     }
-    
+
     /**
      * Define a color to be used for a given class of animal.
      * @param animalClass The animal's Class object.
@@ -73,6 +157,72 @@ public class SimulatorView extends JFrame
     public void setColor(Class animalClass, Color color)
     {
         colors.put(animalClass, color);
+        updatePalette();
+        fieldView.invalidateUnits();
+    }
+
+    /**
+     * Choose whether steps are drawn in a pipeline on the Swing event
+     * thread, at a capped frame rate, or straight away on the thread
+     * running the simulation.
+     * @param pipelined true to draw on the event thread.
+     */
+    public void setPipelined(boolean pipelined)
+    {
+        if(pipelined == this.pipelined) {
+            return;
+        }
+        if(pipelined) {
+            back = new Frame();
+            front = new Frame();
+            latest = new AtomicReference<>(new Frame());
+            timer = new Timer(1000 / FRAMES_PER_SECOND, e -> showLatestFrame());
+            timer.start();
+        }
+        else {
+            timer.stop();
+            timer = null;
+        }
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * Add buttons to pause, resume and single-step the simulation, and
+     * a slider to slow it down, all acting on the given control. The
+     * control also lets the view redraw between steps when the viewport
+     * is moved.
+     * @param control The control of the simulation being shown.
+     */
+    public void setControl(SimulationControl control)
+    {
+        this.control = control;
+        JButton pauseButton = new JButton(control.isPaused() ? "Resume" : "Pause");
+        JButton stepButton = new JButton("Step");
+        stepButton.setEnabled(control.isPaused());
+        pauseButton.addActionListener(e -> {
+            if(control.isPaused()) {
+                control.resume();
+            }
+            else {
+                control.pause();
+            }
+            pauseButton.setText(control.isPaused() ? "Resume" : "Pause");
+            stepButton.setEnabled(control.isPaused());
+        });
+        stepButton.addActionListener(e -> control.step());
+        // Slower to the left, full speed at the right.
+        JSlider speed = new JSlider(0, MAX_DELAY, MAX_DELAY - control.getDelay());
+        speed.addChangeListener(e -> control.setDelay(MAX_DELAY - speed.getValue()));
+
+        JPanel controls = new JPanel(new FlowLayout());
+            controls.add(pauseButton);
+            controls.add(stepButton);
+            controls.add(new JLabel("Speed:"));
+            controls.add(speed);
+        statusPane.add(controls, BorderLayout.SOUTH);
+        if(window != null) {
+            window.pack();
+        }
     }
 
     /**
@@ -98,6 +248,19 @@ public class SimulatorView extends JFrame
         }
     }
 
+    /**
+     * Look up the colors of every species again, after one has changed.
+     * Infected animals are shown in a darker shade.
+     */
+    private void updatePalette()
+    {
+        for(int species = 0; species < Species.COUNT; species++) {
+            Color color = getColor(Species.getAnimalClass(species));
+            palette[2 * species] = color.getRGB();
+            palette[2 * species + 1] = color.darker().getRGB();
+        }
+    }
+
     /**
      * Show the current status of the field.
      * @param step Which iteration step it is.
@@ -105,38 +268,226 @@ public class SimulatorView extends JFrame
      */
     public void showStatus(int step, Field field, int day, String weather)
     {
-        if(!isVisible()) {
-            setVisible(true);
+        if(window != null && !window.isVisible()) {
+            window.setVisible(true);
         }
-            
+
         stepLabel.setText(STEP_PREFIX + step +" " + DAY_PREFIX + day +" "+ WEATHER_PREFIX + weather);
-        stats.reset();
-        
+        population.setText(POPULATION_PREFIX + field.getStats().getPopulationDetails());
+
+        Viewport shown = viewport;
+        units = fillUnits(field, shown, units);
         fieldView.preparePaint();
+        if(fieldView.drawUnits(shown, units)) {
+            fieldView.repaint();
+        }
+    }
 
-        for(int row = 0; row < field.getDepth(); row++) {
-            for(int col = 0; col < field.getWidth(); col++) {
-                Object animal = field.getObjectAt(row, col);
-                if(animal != null) {
-                    Animal anAnimal = (Animal) animal;
-                    stats.incrementCount(animal.getClass());
-                    if (anAnimal.isInfected()){
-                        // If the animal is infected, its colour in the view is darker
-                        fieldView.drawMark(col, row, getColor(animal.getClass()).darker());
-                    }
-                    else {
-                        fieldView.drawMark(col, row, getColor(animal.getClass()));
-                    }
+    /**
+     * Return the RGB value of a cell's contents, from the palette.
+     * @param animal The animal in the cell, or null if it is empty.
+     * @return The cell's color as an RGB value.
+     */
+    private int getRGB(Animal animal)
+    {
+        if(animal == null) {
+            return EMPTY_COLOR.getRGB();
+        }
+        return palette[2 * animal.getSpecies() + (animal.isInfected() ? 1 : 0)];
+    }
+
+    /**
+     * Work out the color of every part of a viewport. Each part covers
+     * a square of cells: a single cell when zoomed in, a sampled cell
+     * when zoomed out less than a tile, and otherwise whole tiles, whose
+     * counts are summarised without looking at their cells.
+     * @param field The field shown.
+     * @param view The viewport.
+     * @param colors An array to fill, which is replaced if too small.
+     * @return The array of colors, in row-major order.
+     */
+    private int[] fillUnits(Field field, Viewport view, int[] colors)
+    {
+        int count = view.rows * view.cols;
+        if(colors.length < count) {
+            colors = new int[count];
+        }
+        int outside = OUTSIDE_COLOR.getRGB();
+        int span = view.cellsPerUnit;
+        for(int unitRow = 0; unitRow < view.rows; unitRow++) {
+            int row = view.firstRow + unitRow * span;
+            for(int unitCol = 0; unitCol < view.cols; unitCol++) {
+                int col = view.firstCol + unitCol * span;
+                int color;
+                if(row >= field.getDepth() || col >= field.getWidth()) {
+                    color = outside;
+                }
+                else if(span < Field.TILE_SIZE) {
+                    color = getRGB((Animal) field.getObjectAt(row, col));
                 }
                 else {
-                    fieldView.drawMark(col, row, EMPTY_COLOR);
+                    color = getTileRGB(field, row / Field.TILE_SIZE, col / Field.TILE_SIZE,
+                                       span / Field.TILE_SIZE);
                 }
+                colors[unitRow * view.cols + unitCol] = color;
+            }
+        }
+        return colors;
+    }
+
+    /**
+     * Summarise a square of tiles as the color of its most common
+     * species, blended with the empty color according to how many of
+     * its cells are occupied.
+     * @param field The field shown.
+     * @param tileRow The first row of tiles.
+     * @param tileCol The first column of tiles.
+     * @param tiles The number of tiles along each side of the square.
+     * @return The RGB value.
+     */
+    private int getTileRGB(Field field, int tileRow, int tileCol, int tiles)
+    {
+        int lastRow = Math.min(tileRow + tiles, field.getTileRows());
+        int lastCol = Math.min(tileCol + tiles, field.getTileCols());
+        int total = 0;
+        int majority = 0;
+        int majorityCount = 0;
+        for(int species = 0; species < Species.COUNT; species++) {
+            int count = 0;
+            for(int r = tileRow; r < lastRow; r++) {
+                for(int c = tileCol; c < lastCol; c++) {
+                    count += field.getTileCount(r, c, species);
+                }
+            }
+            total += count;
+            if(count > majorityCount) {
+                majority = species;
+                majorityCount = count;
+            }
+        }
+        if(total == 0) {
+            return EMPTY_COLOR.getRGB();
+        }
+        // The cells covered, allowing for tiles cut off by the field's edges.
+        int cells = (Math.min(lastRow * Field.TILE_SIZE, field.getDepth()) - tileRow * Field.TILE_SIZE)
+                    * (Math.min(lastCol * Field.TILE_SIZE, field.getWidth()) - tileCol * Field.TILE_SIZE);
+        return blend(EMPTY_COLOR.getRGB(), palette[2 * majority], (double) total / cells);
+    }
+
+    /**
+     * Mix two colors.
+     * @param from The color at weight 0.
+     * @param to The color at weight 1.
+     * @param weight How far to go from the first color to the second.
+     * @return The mixed color as an RGB value.
+     */
+    private static int blend(int from, int to, double weight)
+    {
+        int rgb = 0xFF000000;
+        for(int shift = 0; shift < 24; shift += 8) {
+            int a = (from >> shift) & 0xFF;
+            int b = (to >> shift) & 0xFF;
+            rgb |= ((int) Math.round(a + (b - a) * weight)) << shift;
+        }
+        return rgb;
+    }
+
+    /**
+     * Show the state of the field after each step of the simulation.
+     * @param step Which iteration step it is.
+     * @param day The current day of the simulation.
+     * @param field The field whose status is to be displayed.
+     */
+    public void stepCompleted(int step, int day, Field field)
+    {
+        lastField = field;
+        lastStep = step;
+        lastDay = day;
+        if(pipelined) {
+            publishFrame(step, day, field);
+        }
+        else {
+            showStatus(step, field, day, field.getWeather().getCurrentWeatherString());
+        }
+    }
+
+    /**
+     * Show a different part of the field. If the simulation is between
+     * steps, it is redrawn straight away; otherwise the step under way
+     * shows the new viewport when it ends.
+     * Called on the event thread.
+     * @param view The new viewport.
+     */
+    private void setViewport(Viewport view)
+    {
+        viewport = view;
+        if(control == null || lastField == null) {
+            return;
+        }
+        control.runBetweenSteps(() -> {
+            if(pipelined) {
+                publishFrame(lastStep, lastDay, lastField);
+            }
+            else {
+                showStatus(lastStep, lastField, lastDay, lastField.getWeather().getCurrentWeatherString());
+            }
+        });
+    }
+
+    /**
+     * Copy the colors of the viewport into a frame and make it the
+     * latest, taking back whichever frame the event thread is not using.
+     * Called on the simulation's thread, or between steps.
+     * @param step Which iteration step it is.
+     * @param day The current day of the simulation.
+     * @param field The field to copy.
+     */
+    private void publishFrame(int step, int day, Field field)
+    {
+        Frame frame = back;
+        frame.viewport = viewport;
+        frame.colors = fillUnits(field, frame.viewport, frame.colors);
+        frame.step = step;
+        frame.day = day;
+        frame.weather = field.getWeather().getCurrentWeatherString();
+        frame.population = field.getStats().getPopulationDetails();
+        frame.sequence = ++published;
+        back = latest.getAndSet(frame);
+    }
+
+    /**
+     * Draw the latest frame, if it has not been drawn already, or redraw
+     * the current one if the window has been resized.
+     * Called on the event thread by the timer.
+     */
+    private void showLatestFrame()
+    {
+        if(latest.get().sequence > front.sequence) {
+            // Only this thread puts older frames back, so this one is still newer.
+            front = latest.getAndSet(front);
+            stepLabel.setText(STEP_PREFIX + front.step + " " + DAY_PREFIX + front.day + " "
+                              + WEATHER_PREFIX + front.weather);
+            population.setText(POPULATION_PREFIX + front.population);
+        }
+        if(front.sequence > 0) {
+            fieldView.preparePaint();
+            if(fieldView.drawUnits(front.viewport, front.colors)) {
+                fieldView.repaint();
             }
         }
-        stats.countFinished(); 
+    }
 
-        population.setText(POPULATION_PREFIX + stats.getPopulationDetails(field));
-        fieldView.repaint();
+    /**
+     * Close the window, if there is one, and stop drawing frames.
+     */
+    public void dispose()
+    {
+        if(timer != null) {
+            timer.stop();
+        }
+        if(window != null) {
+            window.dispose();
+        }
     }
 
     /**
@@ -145,26 +496,35 @@ public class SimulatorView extends JFrame
      */
     public boolean isViable(Field field)
     {
-        return stats.isViable(field);
+        return field.getStats().isViable();
     }
-    
+
     /**
-     * Provide a graphical view of a rectangular field. This is 
+     * Provide a graphical view of a rectangular field. This is
      * a nested class (a class defined inside a class) which
      * defines a custom component for the user interface. This
      * component displays the field.
-     * This is rather advanced GUI stuff - you can ignore this 
+     * This is rather advanced GUI stuff - you can ignore this
      * for your project if you like.
      */
     private class FieldView extends JPanel
     {
         private final int GRID_VIEW_SCALING_FACTOR = 6;
+        // The largest the view asks to be, in pixels.
+        private final int MAX_VIEW_WIDTH = 1200;
+        private final int MAX_VIEW_HEIGHT = 800;
 
         private int gridWidth, gridHeight;
-        private int xScale, yScale;
         Dimension size;
-        private Graphics g;
-        private Image fieldImage;
+        private BufferedImage fieldImage;
+        // The pixels of the image, one int per pixel in row-major order.
+        private int[] pixels;
+        // The viewport last drawn, or null if everything must be redrawn.
+        private Viewport drawn;
+        // The RGB value last written for each part of the viewport.
+        private int[] shown;
+        // Where the mouse was when the field was last dragged.
+        private Point dragStart;
 
         /**
          * Create a new FieldView component.
@@ -174,6 +534,44 @@ public class SimulatorView extends JFrame
             gridHeight = height;
             gridWidth = width;
             size = new Dimension(0, 0);
+            shown = new int[0];
+
+            addMouseWheelListener(e -> setViewport(
+                viewport.zoomed(e.getWheelRotation() < 0, e.getX(), e.getY())));
+            addMouseListener(new MouseAdapter() {
+                public void mousePressed(MouseEvent e)
+                {
+                    dragStart = e.getPoint();
+                }
+            });
+            addMouseMotionListener(new MouseMotionAdapter() {
+                public void mouseDragged(MouseEvent e)
+                {
+                    drag(e.getPoint());
+                }
+            });
+            addComponentListener(new ComponentAdapter() {
+                public void componentResized(ComponentEvent e)
+                {
+                    setViewport(viewport.resized(getWidth(), getHeight()));
+                }
+            });
+        }
+
+        /**
+         * Return a viewport onto the whole field, at the usual scale if
+         * that fits on the screen, and otherwise zoomed out until it does.
+         * @return The viewport.
+         */
+        public Viewport getInitialViewport()
+        {
+            Dimension preferred = getPreferredSize();
+            Viewport view = new Viewport(0, 0, 1, GRID_VIEW_SCALING_FACTOR,
+                                         preferred.width, preferred.height, gridHeight, gridWidth);
+            while(!view.showsAll() && view.canZoomOut()) {
+                view = view.zoomed(false, 0, 0);
+            }
+            return view;
         }
 
         /**
@@ -181,39 +579,109 @@ public class SimulatorView extends JFrame
          */
         public Dimension getPreferredSize()
         {
-            return new Dimension(gridWidth * GRID_VIEW_SCALING_FACTOR,
-                                 gridHeight * GRID_VIEW_SCALING_FACTOR);
+            return new Dimension(Math.min(gridWidth * GRID_VIEW_SCALING_FACTOR, MAX_VIEW_WIDTH),
+                                 Math.min(gridHeight * GRID_VIEW_SCALING_FACTOR, MAX_VIEW_HEIGHT));
+        }
+
+        /**
+         * Move the viewport by whole parts as the mouse is dragged.
+         * @param point Where the mouse is now.
+         */
+        private void drag(Point point)
+        {
+            if(dragStart == null) {
+                return;
+            }
+            Viewport view = viewport;
+            int unitCols = (dragStart.x - point.x) / view.unitPixels;
+            int unitRows = (dragStart.y - point.y) / view.unitPixels;
+            if(unitCols != 0 || unitRows != 0) {
+                dragStart.translate(-unitCols * view.unitPixels, -unitRows * view.unitPixels);
+                setViewport(view.panned(unitRows, unitCols));
+            }
         }
 
         /**
          * Prepare for a new round of painting. Since the component
-         * may be resized, compute the scaling factor again.
+         * may be resized, make a new image if the size has changed.
          */
         public void preparePaint()
         {
             if(! size.equals(getSize())) {  // if the size has changed...
                 size = getSize();
-                fieldImage = fieldView.createImage(size.width, size.height);
-                g = fieldImage.getGraphics();
+                drawn = null;
+                if(size.width <= 0 || size.height <= 0) {
+                    // Not laid out yet; there is nothing to draw on.
+                    fieldImage = null;
+                    pixels = null;
+                    return;
+                }
+                fieldImage = new BufferedImage(size.width, size.height, BufferedImage.TYPE_INT_RGB);
+                pixels = ((DataBufferInt) fieldImage.getRaster().getDataBuffer()).getData();
+            }
+        }
 
-                xScale = size.width / gridWidth;
-                if(xScale < 1) {
-                    xScale = GRID_VIEW_SCALING_FACTOR;
+        /**
+         * Make the next call of drawUnits redraw everything.
+         */
+        public void invalidateUnits()
+        {
+            drawn = null;
+        }
+
+        /**
+         * Write the parts of a viewport whose color has changed since
+         * they were last drawn straight into the image's pixels. If the
+         * viewport itself has changed, everything is drawn.
+         * @param view The viewport the colors are for.
+         * @param colors The RGB value of each part, in row-major order.
+         * @return true if anything was drawn.
+         */
+        public boolean drawUnits(Viewport view, int[] colors)
+        {
+            if(pixels == null) {
+                return false;
+            }
+            int count = view.rows * view.cols;
+            if(!view.equals(drawn)) {
+                Arrays.fill(pixels, OUTSIDE_COLOR.getRGB());
+                if(shown.length < count) {
+                    shown = new int[count];
                 }
-                yScale = size.height / gridHeight;
-                if(yScale < 1) {
-                    yScale = GRID_VIEW_SCALING_FACTOR;
+                // No color is 0, as all are opaque, so every part is drawn.
+                Arrays.fill(shown, 0, count, 0);
+                drawn = view;
+            }
+            // Single cells seen close up are separated by a one pixel gap.
+            int gap = view.cellsPerUnit == 1 && view.unitPixels > 3 ? 1 : 0;
+            boolean changed = false;
+            for(int unit = 0; unit < count; unit++) {
+                int rgb = colors[unit];
+                if(rgb != shown[unit]) {
+                    shown[unit] = rgb;
+                    fillRect((unit % view.cols) * view.unitPixels, (unit / view.cols) * view.unitPixels,
+                             view.unitPixels - gap, rgb);
+                    changed = true;
                 }
             }
+            return changed;
         }
-        
+
         /**
-         * Paint on grid location on this field in a given color.
+         * Fill a square of pixels, clipped to the image.
+         * @param left The leftmost column of pixels.
+         * @param top The top row of pixels.
+         * @param side The length of each side of the square.
+         * @param rgb The color as an RGB value.
          */
-        public void drawMark(int x, int y, Color color)
+        private void fillRect(int left, int top, int side, int rgb)
         {
-            g.setColor(color);
-            g.fillRect(x * xScale, y * yScale, xScale-1, yScale-1);
+            int right = Math.min(left + side, size.width);
+            int bottom = Math.min(top + side, size.height);
+            for(int row = top; row < bottom && left < right; row++) {
+                int start = row * size.width;
+                Arrays.fill(pixels, start + left, start + right, rgb);
+            }
         }
 
         /**
@@ -234,4 +702,192 @@ public class SimulatorView extends JFrame
             }
         }
     }
+
+    /**
+     * The part of the field shown, and how closely. The viewport is
+     * divided into square parts, each covering a square of cells and
+     * drawn as a square of pixels. Viewports never change; moving or
+     * zooming gives a new one.
+     */
+    private static class Viewport
+    {
+        // The most pixels along the side of a cell.
+        private static final int MAX_UNIT_PIXELS = 32;
+
+        // The top left cell shown.
+        private final int firstRow, firstCol;
+        // The cells along each side of a part, a power of two.
+        private final int cellsPerUnit;
+        // The pixels along each side of a part, a power of two unless at the usual scale.
+        private final int unitPixels;
+        // The number of parts down and across the viewport.
+        private final int rows, cols;
+        // The size of the viewport in pixels.
+        private final int pixelWidth, pixelHeight;
+        // The size of the field in cells.
+        private final int depth, width;
+
+        /**
+         * Create a viewport, moving it if need be so that it shows as
+         * much of the field as it can, and so that its parts line up
+         * with the field's tiles when zoomed out.
+         * @param firstRow The top row of cells wanted.
+         * @param firstCol The leftmost column of cells wanted.
+         * @param cellsPerUnit The cells along each side of a part.
+         * @param unitPixels The pixels along each side of a part.
+         * @param pixelWidth The width of the viewport in pixels.
+         * @param pixelHeight The height of the viewport in pixels.
+         * @param depth The depth of the field.
+         * @param width The width of the field.
+         */
+        public Viewport(int firstRow, int firstCol, int cellsPerUnit, int unitPixels,
+                        int pixelWidth, int pixelHeight, int depth, int width)
+        {
+            this.cellsPerUnit = cellsPerUnit;
+            this.unitPixels = unitPixels;
+            this.pixelWidth = Math.max(1, pixelWidth);
+            this.pixelHeight = Math.max(1, pixelHeight);
+            this.depth = depth;
+            this.width = width;
+            rows = (this.pixelHeight + unitPixels - 1) / unitPixels;
+            cols = (this.pixelWidth + unitPixels - 1) / unitPixels;
+            this.firstRow = clamp(firstRow, depth, this.pixelHeight);
+            this.firstCol = clamp(firstCol, width, this.pixelWidth);
+        }
+
+        /**
+         * Keep the start of the viewport inside the field, at a
+         * multiple of the cells per part.
+         * @param first The first cell wanted.
+         * @param cells The number of cells along this side of the field.
+         * @param pixels The number of pixels along this side of the viewport.
+         * @return The first cell to show.
+         */
+        private int clamp(int first, int cells, int pixels)
+        {
+            int visible = pixels / unitPixels * cellsPerUnit;
+            first = Math.max(0, Math.min(first, cells - visible));
+            return first - first % cellsPerUnit;
+        }
+
+        /**
+         * @return true if the whole field is in view.
+         */
+        public boolean showsAll()
+        {
+            return pixelHeight / unitPixels * cellsPerUnit >= depth
+                   && pixelWidth / unitPixels * cellsPerUnit >= width;
+        }
+
+        /**
+         * @return true if zooming out would show more of the field.
+         */
+        public boolean canZoomOut()
+        {
+            return unitPixels > 1 || !showsAll();
+        }
+
+        /**
+         * Return the viewport zoomed in or out one level, keeping the
+         * cell under a point where it is.
+         * @param in true to zoom in, false to zoom out.
+         * @param x The x position of the point in pixels.
+         * @param y The y position of the point in pixels.
+         * @return The new viewport, or this one if it can zoom no further.
+         */
+        public Viewport zoomed(boolean in, int x, int y)
+        {
+            int cells = cellsPerUnit;
+            int pixels = unitPixels;
+            if(in && cells > 1) {
+                cells /= 2;
+            }
+            else if(in && pixels < MAX_UNIT_PIXELS) {
+                pixels = Integer.highestOneBit(pixels) * 2;
+            }
+            else if(!in && pixels > 1) {
+                pixels = Integer.highestOneBit(pixels - 1);
+            }
+            else if(!in && canZoomOut()) {
+                cells *= 2;
+            }
+            else {
+                return this;
+            }
+            int row = firstRow + y / unitPixels * cellsPerUnit;
+            int col = firstCol + x / unitPixels * cellsPerUnit;
+            return new Viewport(row - y / pixels * cells, col - x / pixels * cells, cells, pixels,
+                                pixelWidth, pixelHeight, depth, width);
+        }
+
+        /**
+         * Return the viewport moved by a number of parts.
+         * @param unitRows The parts to move down.
+         * @param unitCols The parts to move right.
+         * @return The new viewport.
+         */
+        public Viewport panned(int unitRows, int unitCols)
+        {
+            return new Viewport(firstRow + unitRows * cellsPerUnit, firstCol + unitCols * cellsPerUnit,
+                                cellsPerUnit, unitPixels, pixelWidth, pixelHeight, depth, width);
+        }
+
+        /**
+         * Return the viewport with a new size in pixels.
+         * @param newWidth The width in pixels.
+         * @param newHeight The height in pixels.
+         * @return The new viewport.
+         */
+        public Viewport resized(int newWidth, int newHeight)
+        {
+            return new Viewport(firstRow, firstCol, cellsPerUnit, unitPixels,
+                                newWidth, newHeight, depth, width);
+        }
+
+        /**
+         * @return true if the other object is a viewport showing the same
+         *         parts of the field in the same places.
+         */
+        public boolean equals(Object other)
+        {
+            if(!(other instanceof Viewport)) {
+                return false;
+            }
+            Viewport view = (Viewport) other;
+            return firstRow == view.firstRow && firstCol == view.firstCol
+                   && cellsPerUnit == view.cellsPerUnit && unitPixels == view.unitPixels
+                   && rows == view.rows && cols == view.cols;
+        }
+
+        /**
+         * @return A hash code consistent with equals.
+         */
+        public int hashCode()
+        {
+            return ((firstRow * 31 + firstCol) * 31 + cellsPerUnit) * 31 + unitPixels;
+        }
+    }
+
+    /**
+     * The state of the field after one step, as it is to be drawn.
+     */
+    private static class Frame
+    {
+        // The part of the field the frame shows.
+        private Viewport viewport;
+        // The RGB value of each part of the viewport.
+        private int[] colors;
+        // The order in which the frame was published; 0 if it never has been.
+        private long sequence;
+        private int step, day;
+        private String weather, population;
+
+        /**
+         * Create an empty frame.
+         */
+        public Frame()
+        {
+            colors = new int[0];
+        }
+    }
 }
@@ -0,0 +1,166 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saves checkpoints of a running simulation in the background. Every so
+ * many steps, the state of the simulation is copied into one of two
+ * reusable snapshots at the end of the step, which only takes a few
+ * array copies. A writer thread then saves the snapshot to a file while
+ * the simulation carries on, always through the same small buffer. If
+ * both snapshots are still being written, the checkpoint is skipped
+ * rather than holding up the simulation.
+ *
+ * Each file is written under a temporary name and then renamed, so a
+ * crash part way through never leaves a damaged checkpoint behind.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class SnapshotWriter implements StepObserver
+{
+    // The number of snapshots that can be in use at once.
+    private static final int BUFFERS = 2;
+
+    // The simulation to save.
+    private Simulator simulator;
+    // The file name, which may contain a %d for the step number.
+    private String fileName;
+    // The number of steps between checkpoints.
+    private int interval;
+    // The snapshots not being written.
+    private BlockingQueue<SimulationState> free;
+    // The thread saving the snapshots.
+    private ExecutorService writer;
+    // The buffer the writer thread saves every snapshot through.
+    private ByteBuffer buffer;
+    // The number of checkpoints saved, and skipped because the writer was busy.
+    private AtomicInteger written;
+    private AtomicInteger skipped;
+    // The last error the writer ran into, if any.
+    private volatile IOException lastError;
+    // Whether the writer has been closed, after which no checkpoints are taken.
+    private volatile boolean closed;
+
+    /**
+     * Create a writer, which starts saving checkpoints once it is added
+     * as an observer of the simulation.
+     * @param simulator The simulation to save.
+     * @param fileName The file to save to. If it contains %d, this is
+     *                 replaced by the step number, so every checkpoint
+     *                 is kept; otherwise each replaces the last.
+     * @param interval The number of steps between checkpoints.
+     */
+    public SnapshotWriter(Simulator simulator, String fileName, int interval)
+    {
+        if(interval < 1) {
+            throw new IllegalArgumentException("The interval must be at least one step: " + interval);
+        }
+        this.simulator = simulator;
+        this.fileName = fileName;
+        this.interval = interval;
+        free = new ArrayBlockingQueue<>(BUFFERS);
+        for(int i = 0; i < BUFFERS; i++) {
+            free.add(new SimulationState());
+        }
+        writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        buffer = SimulationState.newBuffer();
+        written = new AtomicInteger();
+        skipped = new AtomicInteger();
+    }
+
+    /**
+     * Take a snapshot if a checkpoint is due, and pass it to the writer.
+     * @param step The number of the step just completed.
+     * @param day The current day.
+     * @param field The field at the end of the step.
+     */
+    public void stepCompleted(int step, int day, Field field)
+    {
+        if(closed || step % interval != 0) {
+            return;
+        }
+        SimulationState state = free.poll();
+        if(state == null) {
+            skipped.incrementAndGet();
+            return;
+        }
+        simulator.captureState(state);
+        String name = fileName.contains("%d") ? String.format(fileName, step) : fileName;
+        writer.execute(() -> save(state, name));
+    }
+
+    /**
+     * Wait for the checkpoints already taken to be saved, then stop the
+     * writer thread. No more checkpoints are taken afterwards, though the
+     * writer may still be observing the simulation.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void close() throws InterruptedException
+    {
+        closed = true;
+        writer.shutdown();
+        writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return The number of checkpoints saved so far.
+     */
+    public int getWritten()
+    {
+        return written.get();
+    }
+
+    /**
+     * @return The number of checkpoints skipped because the writer was
+     *         still busy with earlier ones.
+     */
+    public int getSkipped()
+    {
+        return skipped.get();
+    }
+
+    /**
+     * @return The last error met while saving a checkpoint, or null if
+     *         there has been none.
+     */
+    public IOException getLastError()
+    {
+        return lastError;
+    }
+
+    /**
+     * Save a snapshot, then make it free for reuse.
+     * @param state The snapshot to save.
+     * @param name The name of the file to save it to.
+     */
+    private void save(SimulationState state, String name)
+    {
+        try {
+            Path target = Paths.get(name);
+            Path temporary = Paths.get(name + ".tmp");
+            state.write(temporary.toString(), buffer);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            written.incrementAndGet();
+        }
+        catch(IOException e) {
+            lastError = e;
+        }
+        finally {
+            free.add(state);
+        }
+    }
+}
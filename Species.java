@@ -0,0 +1,62 @@
+/**
+ * Numbers identifying each species in the simulation, for code that
+ * keeps per-species data in arrays rather than looking it up by class.
+ * The numbers are in the order in which the simulator populates a field.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class Species
+{
+    public static final int FOX = 0;
+    public static final int RABBIT = 1;
+    public static final int MEGALODON = 2;
+    public static final int WHALE = 3;
+    public static final int JELLYFISH = 4;
+    // The number of species.
+    public static final int COUNT = 5;
+
+    // The name of each species, indexed by its number.
+    private static final String[] NAMES = {"Fox", "Rabbit", "Megalodon", "Whale", "Jellyfish"};
+    // The class of each species' animals, indexed by its number.
+    private static final Class<?>[] CLASSES = {
+        Fox.class, Rabbit.class, Megalodon.class, Whale.class, Jellyfish.class,
+    };
+
+    /**
+     * There is no need to create Species objects.
+     */
+    private Species()
+    {
+    }
+
+    /**
+     * Return the name of a species.
+     * @param species The number of the species.
+     * @return Its name, e.g. "Fox".
+     */
+    public static String getName(int species)
+    {
+        return NAMES[species];
+    }
+
+    /**
+     * Return a mask with a single bit set for a species, for methods
+     * that look for animals of several species at once.
+     * @param species The number of the species.
+     * @return The bit for the species.
+     */
+    public static int bit(int species)
+    {
+        return 1 << species;
+    }
+
+    /**
+     * Return the class of a species' animals.
+     * @param species The number of the species.
+     * @return Its class, e.g. Fox.class.
+     */
+    public static Class<?> getAnimalClass(int species)
+    {
+        return CLASSES[species];
+    }
+}
@@ -0,0 +1,208 @@
+/**
+ * The characteristics of one species: how long its animals live, how
+ * they breed, how much they can eat and what they eat. A table of these
+ * is part of the SimulationParameters of a run, so the same program can
+ * simulate many variations of a scenario without being recompiled. The
+ * values never change once created.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class SpeciesParameters
+{
+    // The species these parameters are for.
+    private final int species;
+    // The age at which an animal can start to breed.
+    private final int breedingAge;
+    // The age to which an animal can live.
+    private final int maxAge;
+    // The likelihood of an animal breeding.
+    private final double breedingProbability;
+    // The maximum number of births.
+    private final int maxLitterSize;
+    // Maximum amount of food an animal can eat.
+    private final int hungerCap;
+    // Likelihood that a predator hunts at night even if it is not hungry.
+    private final double nightMovingProbability;
+    // A predator always hunts at night if its food level is below this.
+    private final int nightHuntingFoodLevel;
+    // The probability that an animal will be created in any given grid position.
+    private final double creationProbability;
+    // The food value of an animal of each species, or 0 if it is not eaten.
+    private final int[] foodValues;
+
+    /**
+     * Create the parameters of a species.
+     * @param species The species number.
+     * @param breedingAge The age at which an animal can start to breed.
+     * @param maxAge The age to which an animal can live.
+     * @param breedingProbability The likelihood of an animal breeding.
+     * @param maxLitterSize The maximum number of births.
+     * @param hungerCap The most food an animal can hold, or 0 if it does not eat.
+     * @param nightMovingProbability The likelihood of a predator hunting at
+     *                               night when it is not hungry.
+     * @param nightHuntingFoodLevel A predator always hunts at night if its
+     *                              food level is below this.
+     * @param creationProbability The chance of a cell holding one of these
+     *                            animals when the field is populated.
+     * @param foodValues The food value of an animal of each species,
+     *                   indexed by species number, or 0 if it is not eaten.
+     * @throws IllegalArgumentException If a value is out of range, naming
+     *                                  its key in a parameters file.
+     */
+    public SpeciesParameters(int species, int breedingAge, int maxAge, double breedingProbability,
+                             int maxLitterSize, int hungerCap, double nightMovingProbability,
+                             int nightHuntingFoodLevel, double creationProbability, int[] foodValues)
+    {
+        String prefix = SimulationParameters.getKey(species) + ".";
+        // Predators start with a random food level below their cap, so need room for one.
+        boolean predator = Predator.class.isAssignableFrom(Species.getAnimalClass(species));
+        this.species = species;
+        this.breedingAge = SimulationParameters.checkAtLeast(prefix + "breedingAge", breedingAge, 0);
+        this.maxAge = SimulationParameters.checkAtLeast(prefix + "maxAge", maxAge, 1);
+        this.breedingProbability =
+            SimulationParameters.checkProbability(prefix + "breedingProbability", breedingProbability);
+        this.maxLitterSize = SimulationParameters.checkAtLeast(prefix + "maxLitterSize", maxLitterSize, 1);
+        this.hungerCap = SimulationParameters.checkAtLeast(prefix + "hungerCap", hungerCap, predator ? 1 : 0);
+        this.nightMovingProbability =
+            SimulationParameters.checkProbability(prefix + "nightMovingProbability", nightMovingProbability);
+        this.nightHuntingFoodLevel =
+            SimulationParameters.checkAtLeast(prefix + "nightHuntingFoodLevel", nightHuntingFoodLevel, 0);
+        this.creationProbability =
+            SimulationParameters.checkProbability(prefix + "creationProbability", creationProbability);
+        this.foodValues = foodValues.clone();
+        for(int prey = 0; prey < this.foodValues.length; prey++) {
+            SimulationParameters.checkAtLeast(prefix + "food." + SimulationParameters.getKey(prey),
+                                              this.foodValues[prey], 0);
+        }
+    }
+
+    /**
+     * Return the parameters of a species as set in its class.
+     * @param species The species number.
+     * @return The default parameters.
+     */
+    public static SpeciesParameters getDefaults(int species)
+    {
+        int[] food = new int[Species.COUNT];
+        switch(species) {
+            case Species.FOX:
+                food[Species.RABBIT] = Fox.RABBIT_FOOD_VALUE;
+                return new SpeciesParameters(species, Fox.BREEDING_AGE, Fox.MAX_AGE,
+                                             Fox.BREEDING_PROBABILITY, Fox.MAX_LITTER_SIZE,
+                                             Fox.HUNGER_CAP, Fox.NIGHT_MOVING_PROB,
+                                             (3/4) * Fox.RABBIT_FOOD_VALUE,
+                                             Simulator.FOX_CREATION_PROBABILITY, food);
+            case Species.RABBIT:
+                return new SpeciesParameters(species, Rabbit.BREEDING_AGE, Rabbit.MAX_AGE,
+                                             Rabbit.BREEDING_PROBABILITY, Rabbit.MAX_LITTER_SIZE,
+                                             Rabbit.HUNGER_CAP, 0, 0,
+                                             Simulator.RABBIT_CREATION_PROBABILITY, food);
+            case Species.MEGALODON:
+                food[Species.RABBIT] = Megalodon.RABBIT_FOOD_VALUE;
+                food[Species.FOX] = Megalodon.FOX_FOOD_VALUE;
+                food[Species.WHALE] = Megalodon.WHALE_FOOD_VALUE;
+                return new SpeciesParameters(species, Megalodon.BREEDING_AGE, Megalodon.MAX_AGE,
+                                             Megalodon.BREEDING_PROBABILITY, Megalodon.MAX_LITTER_SIZE,
+                                             Megalodon.HUNGER_CAP, Megalodon.NIGHT_MOVING_PROB,
+                                             Megalodon.WHALE_FOOD_VALUE/2,
+                                             Simulator.MEGALODON_CREATION_PROBABILITY, food);
+            case Species.WHALE:
+                return new SpeciesParameters(species, Whale.BREEDING_AGE, Whale.MAX_AGE,
+                                             Whale.BREEDING_PROBABILITY, Whale.MAX_LITTER_SIZE,
+                                             Whale.HUNGER_CAP, 0, 0,
+                                             Simulator.WHALE_CREATION_PROBABILITY, food);
+            case Species.JELLYFISH:
+                return new SpeciesParameters(species, Jellyfish.BREEDING_AGE, Jellyfish.MAX_AGE,
+                                             Jellyfish.BREEDING_PROBABILITY, Jellyfish.MAX_LITTER_SIZE,
+                                             0, 0, 0,
+                                             Simulator.JELLYFISH_CREATION_PROBABILITY, food);
+            default:
+                throw new IllegalArgumentException("Unknown species: " + species);
+        }
+    }
+
+    /**
+     * @return The species these parameters are for.
+     */
+    public int getSpecies()
+    {
+        return species;
+    }
+
+    /**
+     * @return The age at which an animal can start to breed.
+     */
+    public int getBreedingAge()
+    {
+        return breedingAge;
+    }
+
+    /**
+     * @return The age to which an animal can live.
+     */
+    public int getMaxAge()
+    {
+        return maxAge;
+    }
+
+    /**
+     * @return The likelihood of an animal breeding.
+     */
+    public double getBreedingProbability()
+    {
+        return breedingProbability;
+    }
+
+    /**
+     * @return The maximum number of births.
+     */
+    public int getMaxLitterSize()
+    {
+        return maxLitterSize;
+    }
+
+    /**
+     * @return The most food an animal can hold.
+     */
+    public int getHungerCap()
+    {
+        return hungerCap;
+    }
+
+    /**
+     * @return The likelihood of a predator hunting at night when it is
+     *         not hungry.
+     */
+    public double getNightMovingProbability()
+    {
+        return nightMovingProbability;
+    }
+
+    /**
+     * @return The food level below which a predator always hunts at night.
+     */
+    public int getNightHuntingFoodLevel()
+    {
+        return nightHuntingFoodLevel;
+    }
+
+    /**
+     * @return The chance of a cell holding one of these animals when the
+     *         field is populated.
+     */
+    public double getCreationProbability()
+    {
+        return creationProbability;
+    }
+
+    /**
+     * Return how much food an animal of this species gets from eating
+     * an animal of another.
+     * @param prey The species number of the animal eaten.
+     * @return The food value, or 0 if it is not eaten.
+     */
+    public int getFoodValue(int prey)
+    {
+        return foodValues[prey];
+    }
+}
@@ -0,0 +1,18 @@
+/**
+ * An observer of the simulation. Observers are told about the state
+ * of the field whenever the simulation is reset or completes a step.
+ * The graphical view is one such observer; a simulation without any
+ * observers runs headless.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public interface StepObserver
+{
+    /**
+     * Called after the simulation has been reset or has completed a step.
+     * @param step The step that has just completed (0 after a reset).
+     * @param day The current day of the simulation.
+     * @param field The field in its state at the end of the step.
+     */
+    void stepCompleted(int step, int day, Field field);
+}
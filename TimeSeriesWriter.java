@@ -0,0 +1,359 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Records the population of a simulation after every step, as a time
+ * series in a compact columnar file. Each row holds the step, the day,
+ * the weather (0 normal, 1 rain, 2 drought), and the number of animals
+ * and of infected animals of each species.
+ *
+ * Rows are collected into blocks of plain int columns. A full block is
+ * handed to a writer thread, which encodes each column as the
+ * differences between consecutive values, zig-zag encoded as variable
+ * length integers, and appends it to the file. Counts change little
+ * from step to step, so most values take a single byte. There is a
+ * fixed number of blocks; if the writer falls so far behind that none
+ * is free, new rows are dropped and counted until one is, so the
+ * simulation never waits for the disk.
+ *
+ * The file starts with a header: an int identifying the format, an int
+ * version, then the number of columns and each column's name as a
+ * varint length and UTF-8 bytes. Each block that follows holds the
+ * number of rows, then for each column its length in bytes and its
+ * encoded values, so a reader can skip the columns it does not need.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class TimeSeriesWriter implements StepObserver
+{
+    // Identifies a time series file.
+    private static final int MAGIC = 0x50535453;
+    // The version of the file format.
+    private static final int VERSION = 1;
+    // The number of rows in a block.
+    private static final int BLOCK_ROWS = 4096;
+    // The number of blocks that can be in use at once.
+    private static final int BLOCKS = 4;
+    // The columns before the counts.
+    private static final int STEP = 0, DAY = 1, WEATHER = 2, FIRST_COUNT = 3;
+    // The number of columns.
+    private static final int COLUMNS = FIRST_COUNT + 2 * Species.COUNT;
+    // The most bytes a varint can take.
+    private static final int MAX_VARINT_BYTES = 5;
+
+    // The file being written.
+    private FileChannel channel;
+    // The blocks not being written.
+    private BlockingQueue<int[][]> free;
+    // The block being filled, and the number of rows in it.
+    private int[][] block;
+    private int rows;
+    // The thread encoding and writing the blocks.
+    private ExecutorService writer;
+    // The writer's buffer for encoding a block.
+    private ByteBuffer encoded;
+    // The writer's buffer for encoding a column.
+    private ByteBuffer column;
+    // The number of rows written, and dropped because the writer was behind.
+    private AtomicLong written;
+    private long dropped;
+    // The last error the writer ran into, if any.
+    private volatile IOException lastError;
+    // Whether the writer has been closed, after which no rows are recorded.
+    private volatile boolean closed;
+
+    /**
+     * Create a time series file and start recording. The writer must be
+     * added as an observer of a simulation to receive any rows.
+     * @param fileName The file to write, replacing anything already there.
+     * @throws IOException If the file cannot be created.
+     */
+    public TimeSeriesWriter(String fileName) throws IOException
+    {
+        channel = FileChannel.open(Paths.get(fileName), StandardOpenOption.CREATE,
+                                   StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        free = new ArrayBlockingQueue<>(BLOCKS);
+        for(int i = 0; i < BLOCKS; i++) {
+            free.add(new int[COLUMNS][BLOCK_ROWS]);
+        }
+        block = free.poll();
+        writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "time-series-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        column = ByteBuffer.allocate(BLOCK_ROWS * MAX_VARINT_BYTES);
+        encoded = ByteBuffer.allocateDirect(MAX_VARINT_BYTES * (1 + COLUMNS) + COLUMNS * column.capacity());
+        written = new AtomicLong();
+        writeHeader();
+    }
+
+    /**
+     * Record a row for the step just completed.
+     * @param step The number of the step.
+     * @param day The current day.
+     * @param field The field at the end of the step.
+     */
+    public void stepCompleted(int step, int day, Field field)
+    {
+        if(closed) {
+            return;
+        }
+        if(block == null) {
+            // Every block is waiting to be written; try to get one back.
+            block = free.poll();
+            if(block == null) {
+                dropped++;
+                return;
+            }
+        }
+        Weather weather = field.getWeather();
+        FieldStats stats = field.getStats();
+        block[STEP][rows] = step;
+        block[DAY][rows] = day;
+        block[WEATHER][rows] = weather.getIsRaining() ? 1 : weather.getIsDrought() ? 2 : 0;
+        for(int species = 0; species < Species.COUNT; species++) {
+            block[FIRST_COUNT + species][rows] = stats.getCount(species);
+            block[FIRST_COUNT + Species.COUNT + species][rows] = stats.getInfectedCount(species);
+        }
+        rows++;
+        if(rows == BLOCK_ROWS) {
+            submit();
+        }
+    }
+
+    /**
+     * Write the rows still held, wait for the writer to finish and close
+     * the file. No more rows are recorded afterwards, though the writer
+     * may still be observing the simulation.
+     * @throws IOException If the last rows cannot be written or the file
+     *                     cannot be closed.
+     * @throws InterruptedException If interrupted while waiting.
+     */
+    public void close() throws IOException, InterruptedException
+    {
+        closed = true;
+        if(block != null && rows > 0) {
+            submit();
+        }
+        writer.shutdown();
+        writer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        channel.close();
+        if(lastError != null) {
+            throw lastError;
+        }
+    }
+
+    /**
+     * @return The number of rows written to the file so far.
+     */
+    public long getWritten()
+    {
+        return written.get();
+    }
+
+    /**
+     * @return The number of rows dropped because the writer fell behind.
+     */
+    public long getDropped()
+    {
+        return dropped;
+    }
+
+    /**
+     * @return The last error met while writing, or null if there has been none.
+     */
+    public IOException getLastError()
+    {
+        return lastError;
+    }
+
+    /**
+     * Read a whole time series file.
+     * @param fileName The file to read.
+     * @return The values of each column, indexed by column and then row.
+     * @throws IOException If the file cannot be read or is not a time series.
+     */
+    public static int[][] read(String fileName) throws IOException
+    {
+        try(FileChannel input = FileChannel.open(Paths.get(fileName), StandardOpenOption.READ)) {
+            ByteBuffer buffer = input.map(FileChannel.MapMode.READ_ONLY, 0, input.size());
+            if(buffer.remaining() < 8 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Not a time series: " + fileName);
+            }
+            int columns = getVarint(buffer);
+            for(int i = 0; i < columns; i++) {
+                skip(buffer);
+            }
+            // Count the rows, skipping over the columns.
+            int total = 0;
+            int start = buffer.position();
+            while(buffer.hasRemaining()) {
+                total += getVarint(buffer);
+                for(int i = 0; i < columns; i++) {
+                    skip(buffer);
+                }
+            }
+            int[][] values = new int[columns][total];
+            buffer.position(start);
+            int row = 0;
+            while(buffer.hasRemaining()) {
+                int count = getVarint(buffer);
+                for(int i = 0; i < columns; i++) {
+                    getVarint(buffer);
+                    int value = 0;
+                    for(int j = 0; j < count; j++) {
+                        int zigzag = getVarint(buffer);
+                        value += (zigzag >>> 1) ^ -(zigzag & 1);
+                        values[i][row + j] = value;
+                    }
+                }
+                row += count;
+            }
+            return values;
+        }
+        catch(RuntimeException e) {
+            // A truncated or corrupt file runs off the end of the buffer.
+            throw new IOException("Damaged time series: " + fileName, e);
+        }
+    }
+
+    /**
+     * Return the names of the columns, in the order they are stored.
+     * @return The column names.
+     */
+    public static String[] getColumnNames()
+    {
+        String[] names = new String[COLUMNS];
+        names[STEP] = "step";
+        names[DAY] = "day";
+        names[WEATHER] = "weather";
+        for(int species = 0; species < Species.COUNT; species++) {
+            names[FIRST_COUNT + species] = Species.getName(species);
+            names[FIRST_COUNT + Species.COUNT + species] = Species.getName(species) + " infected";
+        }
+        return names;
+    }
+
+    /**
+     * Hand the current block to the writer and start a new one, if one
+     * is free. If none is, the next rows are dropped until one is.
+     */
+    private void submit()
+    {
+        int[][] full = block;
+        int count = rows;
+        writer.execute(() -> writeBlock(full, count));
+        block = free.poll();
+        rows = 0;
+    }
+
+    /**
+     * Write the file header.
+     * @throws IOException If it cannot be written.
+     */
+    private void writeHeader() throws IOException
+    {
+        ByteBuffer header = ByteBuffer.allocate(1024);
+        header.putInt(MAGIC).putInt(VERSION);
+        putVarint(header, COLUMNS);
+        for(String name : getColumnNames()) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            putVarint(header, bytes.length);
+            header.put(bytes);
+        }
+        header.flip();
+        while(header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /**
+     * Encode a block and append it to the file, then make it free for reuse.
+     * Runs on the writer thread.
+     * @param values The block's columns.
+     * @param count The number of rows in the block.
+     */
+    private void writeBlock(int[][] values, int count)
+    {
+        try {
+            encoded.clear();
+            putVarint(encoded, count);
+            for(int[] series : values) {
+                column.clear();
+                int previous = 0;
+                for(int row = 0; row < count; row++) {
+                    int delta = series[row] - previous;
+                    putVarint(column, (delta << 1) ^ (delta >> 31));
+                    previous = series[row];
+                }
+                column.flip();
+                putVarint(encoded, column.remaining());
+                encoded.put(column);
+            }
+            encoded.flip();
+            while(encoded.hasRemaining()) {
+                channel.write(encoded);
+            }
+            written.addAndGet(count);
+        }
+        catch(IOException e) {
+            lastError = e;
+        }
+        finally {
+            free.add(values);
+        }
+    }
+
+    /**
+     * Append an unsigned variable length integer: seven bits per byte,
+     * least significant first, with the top bit set on all but the last.
+     * @param buffer The buffer to append to.
+     * @param value The value, treated as unsigned.
+     */
+    private static void putVarint(ByteBuffer buffer, int value)
+    {
+        while((value & ~0x7F) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Skip over a length, given as a varint, and that many bytes.
+     * @param buffer The buffer to read from.
+     */
+    private static void skip(ByteBuffer buffer)
+    {
+        int length = getVarint(buffer);
+        buffer.position(buffer.position() + length);
+    }
+
+    /**
+     * Read an unsigned variable length integer written by putVarint.
+     * @param buffer The buffer to read from.
+     * @return The value.
+     */
+    private static int getVarint(ByteBuffer buffer)
+    {
+        int value = 0;
+        for(int shift = 0; ; shift += 7) {
+            byte b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if(b >= 0) {
+                return value;
+            }
+        }
+    }
+}
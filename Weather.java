@@ -8,13 +8,17 @@ import java.util.Random;
 public class Weather
 {
     // probability of rain
-    private static final double RAIN_PROBABILITY = 0.02;
+    static final double RAIN_PROBABILITY = 0.02;
     // probability of droughts
-    private static final double DROUGHT_PROBABILITY = 0.007;
+    static final double DROUGHT_PROBABILITY = 0.007;
     // The max duration of a weather condition
-    private static final int MAX_STEPS_WEATHER = 36;
+    static final int MAX_STEPS_WEATHER = 36;
     
     private static final Random rand = Randomizer.getRandom();
+    // The chance of rain or drought starting in normal weather.
+    private final double rainProbability, droughtProbability;
+    // The most steps rain or drought lasts for.
+    private final int maxWeatherSteps;
     
     private boolean isRaining;
     
@@ -29,6 +33,19 @@ public class Weather
      */
     public Weather()
     {
+        this(SimulationParameters.DEFAULTS);
+    }
+    
+    /**
+     * Sets the weather so that there are normal conditions, with rain
+     * and droughts as likely as the parameters say
+     * @param parameters The parameters of the simulation.
+     */
+    public Weather(SimulationParameters parameters)
+    {
+        rainProbability = parameters.getRainProbability();
+        droughtProbability = parameters.getDroughtProbability();
+        maxWeatherSteps = parameters.getMaxWeatherSteps();
         resetWeather();
     }
     
@@ -38,16 +55,16 @@ public class Weather
      */
     public void generateWeather()
     {
-        if (rand.nextDouble() <= RAIN_PROBABILITY) {
+        if (rand.nextDouble() <= rainProbability) {
             isRaining = true;
             // determines how long the weather will last
-            weatherSteps = rand.nextInt(MAX_STEPS_WEATHER) +1; // +1 prevents 0 being generated,
+            weatherSteps = rand.nextInt(maxWeatherSteps) +1; // +1 prevents 0 being generated,
                     // which would cause an eternal rain (in this case)
             return;
         }
-        else if (rand.nextDouble() <= DROUGHT_PROBABILITY){
+        else if (rand.nextDouble() <= droughtProbability){
             isDrought = true;
-            weatherSteps = rand.nextInt(MAX_STEPS_WEATHER) + 1;
+            weatherSteps = rand.nextInt(maxWeatherSteps) + 1;
             return;
         }
 
@@ -150,4 +167,28 @@ public class Weather
     {
         return weatherSteps;
     }    
+    
+    /**
+     * Copy the weather into a snapshot.
+     * @param state The snapshot to fill in.
+     */
+    void saveTo(SimulationState state)
+    {
+        state.raining = isRaining;
+        state.drought = isDrought;
+        state.weatherCount = count;
+        state.weatherSteps = weatherSteps;
+    }
+    
+    /**
+     * Restore the weather from a snapshot.
+     * @param state The snapshot to restore.
+     */
+    void loadFrom(SimulationState state)
+    {
+        isRaining = state.raining;
+        isDrought = state.drought;
+        count = state.weatherCount;
+        weatherSteps = state.weatherSteps;
+    }
 }
@@ -1,5 +1,4 @@
 import java.util.List;
-import java.util.Iterator;
 import java.util.Random;
 
 /**
@@ -12,18 +11,19 @@ import java.util.Random;
  */
 public class Whale extends Prey
 {
-    // Characteristics shared by all whales (class variables).
+    // The default characteristics of whales, used unless the simulation's
+    // parameters give others (see SimulationParameters).
 
     // The age at which a whale can start to breed.
-    private static final int BREEDING_AGE = 50;
+    static final int BREEDING_AGE = 50;
     // The age to which a whale can live.
-    private static final int MAX_AGE = 1000;
+    static final int MAX_AGE = 1000;
     // The likelihood of a whale breeding.
-    private static final double BREEDING_PROBABILITY = 0.15;//.05
+    static final double BREEDING_PROBABILITY = 0.15;//.05
     // The maximum number of births.
-    private static final int MAX_LITTER_SIZE = 2;
+    static final int MAX_LITTER_SIZE = 2;
     // Maximum amount of food a whale can eat
-    private static final int HUNGER_CAP = 75;
+    static final int HUNGER_CAP = 75;
     // A shared random number generator to control breeding.
     private static final Random rand = Randomizer.getRandom();    
 
@@ -34,37 +34,49 @@ public class Whale extends Prey
      * 
      * @param randomAge If true, the whale will have a random age.
      * @param field The field currently occupied.
+     * @param cell The index of the cell within the field.
+     */
+    public Whale(boolean randomAge, Field field, int cell)
+    {
+        super(randomAge, field, cell);
+    }
+    
+    /**
+     * Create a whale at the given location.
+     * 
+     * @param randomAge If true, the whale will have a random age.
+     * @param field The field currently occupied.
      * @param location The location within the field.
      */
     public Whale(boolean randomAge, Field field, Location location)
     {
-        super(randomAge,field, location, MAX_AGE, HUNGER_CAP);        
+        this(randomAge, field, field.getCell(location));
     }
     
     /**
      * This is what the whale does most of the time - it swims 
      * around, and eats krill. Sometimes it will breed or die of old age,
      * die of hunger, or die of disease
+     * @param environment The conditions of the current step.
      * @param newWhales A list to return newly born whales.
      */
-    public void act(List<Animal> newWhales)
+    public void act(Environment environment, List<Animal> newWhales)
     {
-        incrementAge(MAX_AGE);
-        incrementHunger();
+        dieIfDue();
         
-        if(isAlive() && getField().getIsDay()) {
-            animalIsDiseased();
+        if(isAlive() && environment.isDay()) {
+            animalIsDiseased(environment);
             if(deathByDisease()){
                 return;
             }
             findMate(newWhales);
                        
-            findFood(HUNGER_CAP);
+            findFood();
             
             moveToNewLocation();
         }
-        else if (isAlive() && !getField().getIsDay()) {
-            actNight();
+        else if (isAlive() && !environment.isDay()) {
+            actNight(environment);
         }
     }
     
@@ -75,20 +87,11 @@ public class Whale extends Prey
      */
     private void findMate(List<Animal> newWhales)
     {
-        Field field = getField();
-        List<Location> adjacent = field.adjacentLocations(getLocation());
-        Iterator<Location> it = adjacent.iterator();
-        while(it.hasNext()) {
-            Location where = it.next();
-            Object animal = field.getObjectAt(where);
-            if(animal instanceof Whale) {
-                Whale whale = (Whale) animal;
-                if (whale.isMale() != this.isMale()){
-                    giveBirth(newWhales);
-                    matingDisease(whale);
-                    return;
-                }
-            }
+        int where = findAdjacentAnimal(Species.bit(Species.WHALE), getOppositeSex());
+        if(where >= 0) {
+            Whale whale = (Whale) getField().getObjectAt(where);
+            giveBirth(newWhales);
+            matingDisease(whale);
         }
     }
     
@@ -102,11 +105,10 @@ public class Whale extends Prey
         // New whales are born into adjacent locations.
         // Get a list of adjacent free locations.
         Field field = getField();
-        List<Location> free = field.getFreeAdjacentLocations(getLocation());
+        int free = findFreeAdjacentCells();
         int births = breed();
-        for(int b = 0; b < births && free.size() > 0; b++) {
-            Location loc = free.remove(0);
-            Whale young = new Whale(false, field, loc);
+        for(int b = 0; b < births && b < free; b++) {
+            Whale young = new Whale(false, field, getAdjacentCell(b));
             newWhales.add(young);
         }
     }
@@ -119,8 +121,8 @@ public class Whale extends Prey
     private int breed()
     {
         int births = 0;
-        if(canBreed() && rand.nextDouble() <= BREEDING_PROBABILITY) {
-            births = rand.nextInt(MAX_LITTER_SIZE) + 1;
+        if(canBreed() && rand.nextDouble() <= getTraits().getBreedingProbability()) {
+            births = rand.nextInt(getTraits().getMaxLitterSize()) + 1;
         }
         return births;
     }
@@ -131,6 +133,15 @@ public class Whale extends Prey
      */
     private boolean canBreed()
     {
-        return getAge() >= BREEDING_AGE;
+        return getAge() >= getTraits().getBreedingAge();
+    }
+    
+    /**
+     * Return the number identifying the whale species.
+     * @return Species.WHALE
+     */
+    protected int getSpecies()
+    {
+        return Species.WHALE;
     }
 }
@@ -0,0 +1,90 @@
+/**
+ * A fast random number generator using the xoroshiro128++ algorithm of
+ * Blackman and Vigna. It has 128 bits of state, a period of 2^128 - 1,
+ * and better statistical quality than java.util.Random.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+public class XoroshiroRandom extends SeededRandom
+{
+    // Random is serializable.
+    private static final long serialVersionUID = 1L;
+
+    // The two halves of the state. Not initialised here, as setSeed is
+    // called from the superclass constructor.
+    private long s0, s1;
+
+    /**
+     * Create a generator with the given seed.
+     * @param seed The initial seed.
+     */
+    public XoroshiroRandom(long seed)
+    {
+        super(seed);
+    }
+
+    /**
+     * Set the seed. The state is filled from the seed with SplitMix64,
+     * so similar seeds still give unrelated sequences.
+     * @param seed The new seed.
+     */
+    public void setSeed(long seed)
+    {
+        super.setSeed(seed);
+        s0 = Randomizer.mix(seed);
+        s1 = Randomizer.mix(seed + Randomizer.GOLDEN_GAMMA);
+        if((s0 | s1) == 0) {
+            // The all-zero state never changes.
+            s1 = 1;
+        }
+    }
+
+    /**
+     * @return The next 64 pseudorandom bits.
+     */
+    public long nextLong()
+    {
+        long a = s0;
+        long b = s1;
+        long result = Long.rotateLeft(a + b, 17) + a;
+        b ^= a;
+        s0 = Long.rotateLeft(a, 49) ^ b ^ (b << 21);
+        s1 = Long.rotateLeft(b, 28);
+        return result;
+    }
+
+    /**
+     * Generate the next pseudorandom bits.
+     * @param bits The number of random bits wanted.
+     * @return An int whose low bits are random.
+     */
+    protected int next(int bits)
+    {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    /**
+     * @return A pseudorandom double between 0 (inclusive) and 1 (exclusive).
+     */
+    public double nextDouble()
+    {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    /**
+     * @return The two halves of the 128 bit state.
+     */
+    public long[] getState()
+    {
+        return new long[] {s0, s1};
+    }
+
+    /**
+     * @param state A state previously returned by getState.
+     */
+    public void setState(long[] state)
+    {
+        s0 = state[0];
+        s1 = state[1];
+    }
+}
@@ -0,0 +1,188 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * JMH microbenchmarks for the hot paths of the simulation. Each one runs
+ * in forked JVMs, so one benchmark cannot skew another's JIT profile,
+ * and its results go to a Blackhole so the JIT cannot discard the work.
+ *
+ * JMH will not generate benchmarks in the default package, and classes
+ * in the default package cannot be named from any other, so the
+ * operations themselves are in the top-level Benchmark class, which is
+ * loaded by name and called through the Workload interface.
+ *
+ * @author Mohammad Talal Hassan and Luke Kensik
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 10, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(value = 2, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Thread)
+public class HotPaths
+{
+    // The size of the field, as depth x width.
+    @Param({"130x200", "500x500"})
+    public String grid;
+    // The fraction of cells holding an animal.
+    @Param({"0.5"})
+    public double density;
+
+    // The operations being measured.
+    private Workload workload;
+
+    /**
+     * Load the operations and set them up for the size and density
+     * being measured.
+     * @throws ReflectiveOperationException If the Benchmark class cannot
+     *                                      be loaded.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws ReflectiveOperationException
+    {
+        workload = (Workload) Class.forName("Benchmark").getDeclaredConstructor().newInstance();
+        workload.setUp(grid, density);
+    }
+
+    /**
+     * Release what the operations hold.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        workload.tearDown();
+    }
+
+    /**
+     * @param blackhole Receives the result.
+     */
+    @Benchmark
+    public void adjacentLocations(Blackhole blackhole)
+    {
+        blackhole.consume(workload.adjacentLocations());
+    }
+
+    /**
+     * @param blackhole Receives the result.
+     */
+    @Benchmark
+    public void adjacentCells(Blackhole blackhole)
+    {
+        blackhole.consume(workload.adjacentCells());
+    }
+
+    /**
+     * @param blackhole Receives the result.
+     */
+    @Benchmark
+    public void getFreeAdjacentLocations(Blackhole blackhole)
+    {
+        blackhole.consume(workload.getFreeAdjacentLocations());
+    }
+
+    /**
+     * @param blackhole Receives the result.
+     */
+    @Benchmark
+    public void freeAdjacentCells(Blackhole blackhole)
+    {
+        blackhole.consume(workload.freeAdjacentCells());
+    }
+
+    /**
+     * @param blackhole Receives the result.
+     */
+    @Benchmark
+    public void growKrill(Blackhole blackhole)
+    {
+        blackhole.consume(workload.growKrill());
+    }
+
+    /**
+     * @param blackhole Receives the result.
+     */
+    @Benchmark
+    public void growKrillCellByCell(Blackhole blackhole)
+    {
+        blackhole.consume(workload.growKrillCellByCell());
+    }
+
+    /**
+     * @param blackhole Receives the result.
+     */
+    @Benchmark
+    public void getPopulationDetails(Blackhole blackhole)
+    {
+        blackhole.consume(workload.getPopulationDetails());
+    }
+
+    /**
+     * @param blackhole Receives the result.
+     */
+    @Benchmark
+    public void showStatus(Blackhole blackhole)
+    {
+        blackhole.consume(workload.showStatus());
+    }
+
+    /**
+     * @param blackhole Receives the result.
+     */
+    @Benchmark
+    public void simulateOneStep(Blackhole blackhole)
+    {
+        blackhole.consume(workload.simulateOneStep());
+    }
+
+    /**
+     * The operations measured, implemented by the top-level Benchmark
+     * class. Each returns its result, for the Blackhole.
+     */
+    public interface Workload
+    {
+        /**
+         * Prepare a field and a simulation of the given size and density.
+         * @param grid The size of the field, as depth x width.
+         * @param density The fraction of cells holding an animal.
+         */
+        void setUp(String grid, double density);
+
+        /**
+         * Release anything set up.
+         */
+        void tearDown();
+
+        Object adjacentLocations();
+
+        int adjacentCells();
+
+        Object getFreeAdjacentLocations();
+
+        int freeAdjacentCells();
+
+        int growKrill();
+
+        int growKrillCellByCell();
+
+        Object getPopulationDetails();
+
+        Object showStatus();
+
+        Object simulateOneStep();
+    }
+}